@@ -0,0 +1,104 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import io.fabric8.karaf.cm.PlaceholderResolverConfigurationPlugin;
+import io.fabric8.karaf.core.properties.PlaceholderResolver;
+import io.fabric8.karaf.core.properties.PlaceholderResolverImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link PlaceholderResolverConfigurationPlugin#modifyConfiguration}, which is called by
+ * Configuration Admin every time a configuration is delivered to a ManagedService.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigurationPluginBenchmark {
+
+    @Param({ "100" })
+    public int size;
+
+    /**
+     * Whether the placeholder dependencies are recorded (<tt>fabric8.config.plugin.refresh</tt>)
+     */
+    @Param({ "false", "true" })
+    public String refresh;
+
+    private PlaceholderResolverConfigurationPlugin plugin;
+    private Hashtable<String, Object> pid;
+
+    @Setup
+    public void setUp() throws Exception {
+        System.setProperty("fabric8.config.plugin.enabled", "true");
+        System.setProperty("fabric8.config.plugin.refresh", refresh);
+
+        final PlaceholderResolver resolver = new PlaceholderResolverImpl() {
+            {
+                bindFunction(new PlaceholderResolverBenchmark.MapFunction(), Collections.emptyMap());
+                bindFunction(new PlaceholderResolverBenchmark.Base64Function(), Collections.emptyMap());
+            }
+        };
+        plugin = new PlaceholderResolverConfigurationPlugin() {
+            {
+                bindResolver(resolver);
+            }
+        };
+
+        // the activation method is package private, as it's meant to be called by SCR only
+        Method activate = PlaceholderResolverConfigurationPlugin.class.getDeclaredMethod("activate");
+        activate.setAccessible(true);
+        activate.invoke(plugin);
+
+        pid = Dictionaries.pid(size);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.clearProperty("fabric8.config.plugin.enabled");
+        System.clearProperty("fabric8.config.plugin.refresh");
+    }
+
+    /**
+     * Includes copying of the dictionary, as Configuration Admin passes a copy to the plugins too
+     */
+    @Benchmark
+    public Dictionary<String, Object> modifyConfiguration() {
+        Dictionary<String, Object> dictionary = new Hashtable<>(pid);
+        plugin.modifyConfiguration(null, dictionary);
+        return dictionary;
+    }
+}
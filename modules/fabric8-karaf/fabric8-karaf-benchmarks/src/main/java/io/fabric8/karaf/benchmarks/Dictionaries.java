@@ -0,0 +1,49 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.benchmarks;
+
+import java.util.Hashtable;
+
+/**
+ * Shapes of configuration dictionaries used by the benchmarks
+ */
+final class Dictionaries {
+
+    private Dictionaries() {
+    }
+
+    /**
+     * Creates PID with given number of keys - 60% plain values, 30% simple placeholders and 10% nested or chained
+     * placeholders, using <tt>map</tt> and <tt>base64</tt> functions
+     */
+    static Hashtable<String, Object> pid(int size) {
+        Hashtable<String, Object> pid = new Hashtable<>();
+        pid.put("service.pid", "io.fabric8.benchmark");
+        for (int i = 0; i < size; i++) {
+            int kind = i % 10;
+            if (kind < 6) {
+                pid.put("plain." + i, "value-" + i);
+            } else if (kind < 9) {
+                pid.put("simple." + i, "$[map:key" + i + "]");
+            } else if (i % 20 == 9) {
+                pid.put("nested." + i, "$[map:$[map:prefix" + i + "]]");
+            } else {
+                pid.put("chained." + i, "user=$[map:key" + i + "], password=$[map+base64:encoded" + i + "]");
+            }
+        }
+        return pid;
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.fabric8.karaf.core.properties.function.EnvPropertiesFunction;
+import io.fabric8.karaf.core.properties.function.KubernetesPropertiesFunction;
+import io.fabric8.karaf.core.properties.function.PropertiesFunction;
+import io.fabric8.karaf.core.properties.function.ServicePropertiesFunction;
+import io.fabric8.karaf.core.properties.function.SysPropertiesFunction;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the individual properties functions. The <tt>k8s</tt> function runs against
+ * {@link StubKubernetesClient}, with the resource cache enabled (default TTL) and disabled (TTL of 0).
+ * Number of requests sent to the API server is reported as <tt>apiRequests</tt> secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FunctionsBenchmark {
+
+    @Param({ "30000", "0" })
+    public String cacheTtl;
+
+    private PropertiesFunction env;
+    private PropertiesFunction sys;
+    private PropertiesFunction service;
+    private KubernetesPropertiesFunction k8s;
+    private StubKubernetesClient stub;
+
+    @Setup
+    public void setUp() {
+        System.setProperty("fabric8.k8s.cache.ttl", cacheTtl);
+        System.setProperty("fabric8.k8s.secrets.api.enabled", "true");
+        System.setProperty("io.fabric8.benchmark.property", "value");
+
+        env = new EnvPropertiesFunction();
+        sys = new SysPropertiesFunction();
+        service = new ServicePropertiesFunction();
+
+        Map<String, String> data = new HashMap<>();
+        Map<String, String> encoded = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            data.put("key" + i, "value" + i);
+            encoded.put("key" + i, Base64.getEncoder().encodeToString(("secret" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+        stub = new StubKubernetesClient()
+            .configMap("benchmark-map", data)
+            .secret("benchmark-secret", encoded);
+        final KubernetesClient client = stub.build();
+
+        k8s = new KubernetesPropertiesFunction() {
+            {
+                bindKubernetesClient(client);
+            }
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.clearProperty("fabric8.k8s.cache.ttl");
+        System.clearProperty("fabric8.k8s.secrets.api.enabled");
+        System.clearProperty("io.fabric8.benchmark.property");
+    }
+
+    @Benchmark
+    public String env() {
+        return env.apply("PATH");
+    }
+
+    @Benchmark
+    public String sys() {
+        return sys.apply("io.fabric8.benchmark.property");
+    }
+
+    /**
+     * Service which isn't defined in the environment, so the default value is used
+     */
+    @Benchmark
+    public String serviceDefault() {
+        return service.apply("benchmark-service:localhost:8080");
+    }
+
+    @Benchmark
+    public String k8sConfigMap(ApiRequests requests) {
+        return k8s.apply("map:benchmark-map/key42");
+    }
+
+    @Benchmark
+    public String k8sSecret(ApiRequests requests) {
+        return k8s.apply("secret:benchmark-secret/key42");
+    }
+
+    /**
+     * Counts requests received by {@link StubKubernetesClient} during the iteration
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ApiRequests {
+
+        public long apiRequests;
+        private long initial;
+
+        @Setup(Level.Iteration)
+        public void setUp(FunctionsBenchmark benchmark) {
+            apiRequests = 0L;
+            initial = benchmark.stub.getRequests();
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown(FunctionsBenchmark benchmark) {
+            apiRequests = benchmark.stub.getRequests() - initial;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.fabric8.karaf.core.properties.PlaceholderResolverImpl;
+import io.fabric8.karaf.core.properties.function.PropertiesFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link PlaceholderResolverImpl} with in-memory functions, so only the cost of parsing and
+ * function lookup is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaceholderResolverBenchmark {
+
+    private PlaceholderResolverImpl resolver;
+    private Hashtable<String, Object> pid;
+
+    @Setup
+    public void setUp() {
+        resolver = new PlaceholderResolverImpl() {
+            {
+                bindFunction(new MapFunction(), Collections.emptyMap());
+                bindFunction(new Base64Function(), Collections.emptyMap());
+            }
+        };
+        pid = Dictionaries.pid(100);
+    }
+
+    @Benchmark
+    public String resolve() {
+        return resolver.resolve("map:key42");
+    }
+
+    @Benchmark
+    public String resolveChained() {
+        return resolver.resolve("map+base64:encoded42");
+    }
+
+    @Benchmark
+    public String replace() {
+        return resolver.replace("jdbc:postgresql://$[map:key1]:$[map:key2]/$[map+base64:encoded3]");
+    }
+
+    /**
+     * Includes copying of the dictionary, as the placeholders are replaced in place
+     */
+    @Benchmark
+    public Dictionary<String, Object> replaceAll() {
+        Dictionary<String, Object> dictionary = new Hashtable<>(pid);
+        resolver.replaceAll(dictionary);
+        return dictionary;
+    }
+
+    static final class MapFunction implements PropertiesFunction {
+        private final Map<String, String> values = new HashMap<>();
+
+        MapFunction() {
+            for (int i = 0; i < 100; i++) {
+                values.put("key" + i, "value" + i);
+                values.put("encoded" + i, Base64.getEncoder().encodeToString(("secret" + i).getBytes(StandardCharsets.UTF_8)));
+                values.put("prefix" + i, "key" + i);
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "map";
+        }
+
+        @Override
+        public String apply(String remainder) {
+            return values.get(remainder);
+        }
+    }
+
+    static final class Base64Function implements PropertiesFunction {
+        @Override
+        public String getName() {
+            return "base64";
+        }
+
+        @Override
+        public String apply(String remainder) {
+            return new String(Base64.getDecoder().decode(remainder), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.benchmarks;
+
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.fabric8.karaf.blueprint.Fabric8PropertyEvaluator;
+import io.fabric8.karaf.core.properties.PlaceholderResolver;
+import io.fabric8.karaf.core.properties.PlaceholderResolverImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link Fabric8PropertyEvaluator}, which is called by blueprint for each placeholder of a
+ * <tt>property-placeholder</tt> using the <tt>fabric8</tt> evaluator, with the 100 properties of the placeholder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyEvaluatorBenchmark {
+
+    private Fabric8PropertyEvaluator evaluator;
+    private Dictionary<String, String> properties;
+    private Map<String, Object> map;
+
+    @Setup
+    public void setUp() {
+        final PlaceholderResolver resolver = new PlaceholderResolverImpl() {
+            {
+                bindFunction(new PlaceholderResolverBenchmark.MapFunction(), Collections.emptyMap());
+                bindFunction(new PlaceholderResolverBenchmark.Base64Function(), Collections.emptyMap());
+            }
+        };
+        evaluator = new Fabric8PropertyEvaluator() {
+            {
+                bindResolver(resolver);
+            }
+        };
+
+        properties = new Hashtable<>();
+        map = new HashMap<>();
+        for (Map.Entry<String, Object> entry : Dictionaries.pid(100).entrySet()) {
+            properties.put(entry.getKey(), entry.getValue().toString());
+            map.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public String evaluateFunction() {
+        return evaluator.evaluate("map:key42", properties);
+    }
+
+    @Benchmark
+    public String evaluateChained() {
+        return evaluator.evaluate("map+base64:encoded42", properties);
+    }
+
+    /**
+     * Expression which isn't a function, so it's looked up in the properties
+     */
+    @Benchmark
+    public String evaluateProperty() {
+        return evaluator.evaluate("plain.42", properties);
+    }
+
+    @Benchmark
+    public Object evaluateMap() {
+        return evaluator.evaluate("map:key42", map);
+    }
+}
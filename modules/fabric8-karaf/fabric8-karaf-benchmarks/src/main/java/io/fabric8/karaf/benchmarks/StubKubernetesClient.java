@@ -0,0 +1,110 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.SecretBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.dsl.Resource;
+
+/**
+ * In-memory {@link KubernetesClient} which supports just the calls done by the <tt>k8s</tt> function:
+ * <tt>getNamespace()</tt>, <tt>configMaps()/secrets()</tt> followed by <tt>withName(name).get()</tt> or
+ * <tt>watch(watcher)</tt>. Counts the <tt>get()</tt> calls, which would be round trips to the API server.
+ */
+final class StubKubernetesClient {
+    static final String NAMESPACE = "benchmark";
+
+    private final Map<String, Map<String, String>> configMaps = new HashMap<>();
+    private final Map<String, Map<String, String>> secrets = new HashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+
+    StubKubernetesClient configMap(String name, Map<String, String> data) {
+        configMaps.put(name, data);
+        return this;
+    }
+
+    StubKubernetesClient secret(String name, Map<String, String> data) {
+        secrets.put(name, data);
+        return this;
+    }
+
+    long getRequests() {
+        return requests.get();
+    }
+
+    KubernetesClient build() {
+        return proxy(KubernetesClient.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getNamespace":
+                    return NAMESPACE;
+                case "configMaps":
+                    return operation(method.getReturnType(), false, null);
+                case "secrets":
+                    return operation(method.getReturnType(), true, null);
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        });
+    }
+
+    private Object operation(Class<?> type, boolean secret, String name) {
+        return proxy(type, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "inNamespace":
+                    return proxy;
+                case "withName":
+                    return operation(Resource.class, secret, (String) args[0]);
+                case "get":
+                    requests.incrementAndGet();
+                    return secret ? getSecret(name) : getConfigMap(name);
+                case "watch":
+                    return proxy(Watch.class, (p, m, a) -> null);
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        });
+    }
+
+    private Object getConfigMap(String name) {
+        Map<String, String> data = configMaps.get(name);
+        return data == null ? null : new ConfigMapBuilder()
+            .withNewMetadata().withName(name).withNamespace(NAMESPACE).endMetadata()
+            .withData(data)
+            .build();
+    }
+
+    private Object getSecret(String name) {
+        Map<String, String> data = secrets.get(name);
+        return data == null ? null : new SecretBuilder()
+            .withNewMetadata().withName(name).withNamespace(NAMESPACE).endMetadata()
+            .withData(data)
+            .build();
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(StubKubernetesClient.class.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+}
@@ -16,10 +16,16 @@
 
 package io.fabric8.karaf.blueprint;
 
+import java.util.AbstractMap;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import io.fabric8.karaf.core.properties.PlaceholderResolver;
@@ -33,6 +39,10 @@ import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.blueprint.container.BlueprintEvent;
+import org.osgi.service.blueprint.container.BlueprintListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Ports Camel's env: sys: service: service.host: service.port: property
@@ -44,6 +54,11 @@ import org.apache.felix.scr.annotations.Service;
  * It supports chained evaluators i.e ${env+service:MY_ENV_VAR} where the first
  * step is to resolve MY_ENV_VAR against environment variables then the result is
  * resolved using service function.
+ *
+ * While blueprint containers are being created, the resolved expressions are
+ * cached, as the same ones are usually used by many beans and containers. Each
+ * container keeps the cache enabled for at most {@link #MAX_WINDOW} and cached
+ * values are never older than that, even if containers keep being created.
  */
 @Component(
     immediate = true,
@@ -58,37 +73,125 @@ import org.apache.felix.scr.annotations.Service;
     policy = ReferencePolicy.STATIC,
     referenceInterface  = PlaceholderResolver.class
 )
-@Service({ PropertyEvaluatorExt.class, PropertyEvaluator.class })
-public class Fabric8PropertyEvaluator implements PropertyEvaluatorExt, PropertyEvaluator {
+@Service({ PropertyEvaluatorExt.class, PropertyEvaluator.class, BlueprintListener.class })
+public class Fabric8PropertyEvaluator implements PropertyEvaluatorExt, PropertyEvaluator, BlueprintListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Fabric8PropertyEvaluator.class);
+
+    /** Maximum time (in nanoseconds) a container keeps the cache enabled, and maximum age of cached values */
+    static final long MAX_WINDOW = TimeUnit.SECONDS.toNanos(30);
+    /** Maximum number of cached expressions */
+    static final int MAX_CACHE_SIZE = 1024;
+
     private final AtomicReference<PlaceholderResolver> resolver;
+    private final Map<String, String> cache;
+    private final AtomicLong cacheCreated;
+    // bundle ID of the container being created -> end of its caching window (as returned by System.nanoTime())
+    private final Map<Long, Long> windows;
+    private volatile boolean caching;
+    private volatile long windowEnd;
+
+    private final AtomicLong evaluations;
+    private final AtomicLong cacheHits;
+    private final AtomicLong evaluationTime;
+    private long windowEvaluations;
+    private long windowCacheHits;
+    private long windowEvaluationTime;
 
     public Fabric8PropertyEvaluator() {
         resolver = new AtomicReference<>();
+        cache = new ConcurrentHashMap<>();
+        cacheCreated = new AtomicLong();
+        windows = new HashMap<>();
+        caching = false;
+        evaluations = new AtomicLong();
+        cacheHits = new AtomicLong();
+        evaluationTime = new AtomicLong();
     }
 
     @Override
     public String evaluate(String expression, Dictionary<String, String> properties) {
-        Map<String, Object> m = new HashMap<>();
-        for (Enumeration<String> e = properties.keys(); e.hasMoreElements(); ) {
-            String k = e.nextElement();
-            m.put(k, properties.get(k));
-        }
-        Object v = evaluate(expression, m);
+        Object v = evaluate(expression, new DictionaryMap(properties));
         return v instanceof String ? (String)v : (v != null ? v.toString() : null);
     }
 
     @Override
     public Object evaluate(String key, Map<String, Object> dictionary) {
-        PlaceholderResolver res = resolver.get();
-        String value = null;
+        long start = System.nanoTime();
+        String value = resolve(key, start);
 
-        if (res != null) {
-            value = res.resolve(key);
-        }
+        evaluations.incrementAndGet();
+        evaluationTime.addAndGet(System.nanoTime() - start);
 
         return value != null ? value : dictionary.get(key);
     }
 
+    // ****************************
+    // BlueprintListener
+    // ****************************
+
+    /**
+     * Keeps the resolved expressions cached while any blueprint container is
+     * being created, as evaluations don't tell which container they are done
+     * for. A container waiting for its dependencies (grace period) may wait
+     * for a long time, so it no longer keeps the cache enabled.
+     */
+    @Override
+    public void blueprintEvent(BlueprintEvent event) {
+        blueprintEvent(event, System.nanoTime());
+    }
+
+    void blueprintEvent(BlueprintEvent event, long now) {
+        long bundleId = event.getBundle().getBundleId();
+
+        synchronized (windows) {
+            expireWindows(now);
+            switch (event.getType()) {
+            case BlueprintEvent.CREATING:
+                if (!caching) {
+                    openWindow(now);
+                }
+                windows.put(bundleId, now + MAX_WINDOW);
+                break;
+            case BlueprintEvent.GRACE_PERIOD:
+            case BlueprintEvent.CREATED:
+            case BlueprintEvent.FAILURE:
+            case BlueprintEvent.DESTROYING:
+            case BlueprintEvent.DESTROYED:
+                windows.remove(bundleId);
+                break;
+            default:
+                break;
+            }
+
+            expireWindows(now);
+        }
+    }
+
+    // ****************************
+    // Statistics
+    // ****************************
+
+    /**
+     * @return number of expressions evaluated since the evaluator has been created
+     */
+    public long getEvaluations() {
+        return evaluations.get();
+    }
+
+    /**
+     * @return number of expressions resolved from the cache
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * @return total time (in milliseconds) spent evaluating expressions
+     */
+    public long getEvaluationTime() {
+        return TimeUnit.NANOSECONDS.toMillis(evaluationTime.get());
+    }
+
     // ****************************
     // Binding
     // ****************************
@@ -99,5 +202,108 @@ public class Fabric8PropertyEvaluator implements PropertyEvaluatorExt, PropertyE
 
     protected void unbindResolver(PlaceholderResolver resolver) {
         this.resolver.compareAndSet(resolver, null);
+        this.cache.clear();
+    }
+
+    // ****************************
+    // Helpers
+    // ****************************
+
+    String resolve(String key, long now) {
+        boolean cached = caching && now - windowEnd < 0;
+        if (cached) {
+            long created = cacheCreated.get();
+            if (now - created >= MAX_WINDOW && cacheCreated.compareAndSet(created, now)) {
+                // containers keep being created, don't serve values resolved long time ago
+                cache.clear();
+            }
+            String value = cache.get(key);
+            if (value != null) {
+                cacheHits.incrementAndGet();
+                return value;
+            }
+        }
+
+        PlaceholderResolver res = resolver.get();
+        String value = null;
+
+        if (res != null) {
+            value = res.resolve(key);
+        }
+        if (value != null && cached && cache.size() < MAX_CACHE_SIZE) {
+            cache.put(key, value);
+        }
+
+        return value;
+    }
+
+    /**
+     * Removes the windows that ended and disables the cache if there are none left. Must be called with
+     * {@code windows} locked.
+     */
+    private void expireWindows(long now) {
+        long end = now;
+        for (Iterator<Long> it = windows.values().iterator(); it.hasNext(); ) {
+            long until = it.next();
+            if (until - now <= 0) {
+                it.remove();
+            } else if (until - end > 0) {
+                end = until;
+            }
+        }
+        windowEnd = end;
+        if (caching && windows.isEmpty()) {
+            closeWindow();
+        }
+    }
+
+    private void openWindow(long now) {
+        cache.clear();
+        cacheCreated.set(now);
+        windowEvaluations = evaluations.get();
+        windowCacheHits = cacheHits.get();
+        windowEvaluationTime = evaluationTime.get();
+        caching = true;
+    }
+
+    private void closeWindow() {
+        caching = false;
+        cache.clear();
+        LOGGER.info("Blueprint containers created, {} expressions evaluated ({} cached) in {} ms",
+            evaluations.get() - windowEvaluations,
+            cacheHits.get() - windowCacheHits,
+            TimeUnit.NANOSECONDS.toMillis(evaluationTime.get() - windowEvaluationTime));
+    }
+
+    /**
+     * Read only view of a dictionary, so it doesn't have to be copied when
+     * only few of its properties (if any) are looked up.
+     */
+    static final class DictionaryMap extends AbstractMap<String, Object> {
+        private final Dictionary<String, String> dictionary;
+
+        DictionaryMap(Dictionary<String, String> dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public Object get(Object key) {
+            return key != null ? dictionary.get(key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            Map<String, Object> m = new HashMap<>();
+            for (Enumeration<String> e = dictionary.keys(); e.hasMoreElements(); ) {
+                String k = e.nextElement();
+                m.put(k, dictionary.get(k));
+            }
+            return m.entrySet();
+        }
     }
 }
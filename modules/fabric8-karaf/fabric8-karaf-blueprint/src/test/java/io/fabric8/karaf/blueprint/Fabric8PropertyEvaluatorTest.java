@@ -0,0 +1,187 @@
+/**
+ * Copyright 2016 Red Hat, Inc.
+ * <p/>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package io.fabric8.karaf.blueprint;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.Map;
+
+import io.fabric8.karaf.core.properties.PlaceholderResolver;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.service.blueprint.container.BlueprintEvent;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class Fabric8PropertyEvaluatorTest {
+
+    private PlaceholderResolver resolver;
+    private Fabric8PropertyEvaluator evaluator;
+
+    @Before
+    public void setUp() {
+        resolver = mock(PlaceholderResolver.class);
+        when(resolver.resolve(anyString())).thenAnswer(i -> "resolved:" + i.getArgument(0));
+        evaluator = new Fabric8PropertyEvaluator();
+        evaluator.bindResolver(resolver);
+    }
+
+    @Test
+    public void testNoCachingOutsideOfWindow() {
+        assertThat(evaluator.resolve("env:A", 0L)).isEqualTo("resolved:env:A");
+        assertThat(evaluator.resolve("env:A", 1L)).isEqualTo("resolved:env:A");
+
+        verify(resolver, times(2)).resolve("env:A");
+        assertThat(evaluator.getCacheHits()).isZero();
+    }
+
+    @Test
+    public void testCachingWhileContainerIsCreated() {
+        evaluator.blueprintEvent(event(BlueprintEvent.CREATING, 1L), 0L);
+        assertThat(evaluator.resolve("env:A", 1L)).isEqualTo("resolved:env:A");
+        assertThat(evaluator.resolve("env:A", 2L)).isEqualTo("resolved:env:A");
+        verify(resolver, times(1)).resolve("env:A");
+        assertThat(evaluator.getCacheHits()).isEqualTo(1L);
+
+        evaluator.blueprintEvent(event(BlueprintEvent.CREATED, 1L), 3L);
+        evaluator.resolve("env:A", 4L);
+        verify(resolver, times(2)).resolve("env:A");
+    }
+
+    @Test
+    public void testWindowIsKeptPerContainer() {
+        evaluator.blueprintEvent(event(BlueprintEvent.CREATING, 1L), 0L);
+        evaluator.blueprintEvent(event(BlueprintEvent.CREATING, 2L), 1L);
+        evaluator.blueprintEvent(event(BlueprintEvent.CREATED, 1L), 2L);
+        // other container's events don't close the window
+        evaluator.blueprintEvent(event(BlueprintEvent.DESTROYED, 3L), 3L);
+        evaluator.resolve("env:A", 4L);
+        evaluator.resolve("env:A", 5L);
+        verify(resolver, times(1)).resolve("env:A");
+
+        evaluator.blueprintEvent(event(BlueprintEvent.FAILURE, 2L), 6L);
+        evaluator.resolve("env:A", 7L);
+        verify(resolver, times(2)).resolve("env:A");
+    }
+
+    @Test
+    public void testGracePeriodClosesWindow() {
+        evaluator.blueprintEvent(event(BlueprintEvent.CREATING, 1L), 0L);
+        evaluator.blueprintEvent(event(BlueprintEvent.GRACE_PERIOD, 1L), 1L);
+        evaluator.resolve("env:A", 2L);
+        evaluator.resolve("env:A", 3L);
+
+        verify(resolver, times(2)).resolve("env:A");
+    }
+
+    @Test
+    public void testWindowEndsAfterMaxDuration() {
+        evaluator.blueprintEvent(event(BlueprintEvent.CREATING, 1L), 0L);
+        evaluator.resolve("env:A", 1L);
+        evaluator.resolve("env:A", Fabric8PropertyEvaluator.MAX_WINDOW - 1);
+        verify(resolver, times(1)).resolve("env:A");
+
+        // container never reported it's created
+        evaluator.resolve("env:A", Fabric8PropertyEvaluator.MAX_WINDOW);
+        evaluator.resolve("env:A", Fabric8PropertyEvaluator.MAX_WINDOW + 1);
+        verify(resolver, times(3)).resolve("env:A");
+
+        // expired window doesn't prevent the next one
+        long now = 2 * Fabric8PropertyEvaluator.MAX_WINDOW;
+        evaluator.blueprintEvent(event(BlueprintEvent.CREATING, 2L), now);
+        evaluator.resolve("env:A", now + 1);
+        evaluator.resolve("env:A", now + 2);
+        verify(resolver, times(4)).resolve("env:A");
+    }
+
+    @Test
+    public void testCachedValuesExpire() {
+        long half = Fabric8PropertyEvaluator.MAX_WINDOW / 2;
+        evaluator.blueprintEvent(event(BlueprintEvent.CREATING, 1L), 0L);
+        evaluator.resolve("env:A", 1L);
+        evaluator.blueprintEvent(event(BlueprintEvent.CREATING, 2L), half);
+        evaluator.blueprintEvent(event(BlueprintEvent.CREATED, 1L), half + 1);
+        evaluator.resolve("env:A", half + 2);
+        verify(resolver, times(1)).resolve("env:A");
+
+        // window of the second container is still open, but the value is too old
+        evaluator.resolve("env:A", Fabric8PropertyEvaluator.MAX_WINDOW + 1);
+        evaluator.resolve("env:A", Fabric8PropertyEvaluator.MAX_WINDOW + 2);
+        verify(resolver, times(2)).resolve("env:A");
+    }
+
+    @Test
+    public void testCacheSizeIsBounded() {
+        evaluator.blueprintEvent(event(BlueprintEvent.CREATING, 1L), 0L);
+        for (int i = 0; i <= Fabric8PropertyEvaluator.MAX_CACHE_SIZE; i++) {
+            evaluator.resolve("env:A" + i, 1L);
+        }
+        evaluator.resolve("env:A0", 2L);
+        evaluator.resolve("env:A" + Fabric8PropertyEvaluator.MAX_CACHE_SIZE, 2L);
+
+        verify(resolver, times(1)).resolve("env:A0");
+        verify(resolver, times(2)).resolve("env:A" + Fabric8PropertyEvaluator.MAX_CACHE_SIZE);
+    }
+
+    @Test
+    public void testFallsBackToDictionary() {
+        when(resolver.resolve("missing")).thenReturn(null);
+        Dictionary<String, String> properties = new Hashtable<>();
+        properties.put("missing", "default");
+
+        assertThat(evaluator.evaluate("missing", properties)).isEqualTo("default");
+        assertThat(evaluator.evaluate("env:A", properties)).isEqualTo("resolved:env:A");
+        assertThat(evaluator.getEvaluations()).isEqualTo(2L);
+    }
+
+    @Test
+    public void testDictionaryMap() {
+        Dictionary<String, String> properties = new Hashtable<>();
+        properties.put("a", "1");
+        properties.put("b", "2");
+        Map<String, Object> map = new Fabric8PropertyEvaluator.DictionaryMap(properties);
+
+        assertThat(map.get("a")).isEqualTo("1");
+        assertThat(map.get("c")).isNull();
+        assertThat(map.get(null)).isNull();
+        assertThat(map.containsKey("b")).isTrue();
+        assertThat(map.containsKey("c")).isFalse();
+        assertThat(map.containsKey(null)).isFalse();
+        assertThat(map).hasSize(2).containsEntry("a", "1").containsEntry("b", "2");
+
+        // view reflects changes of the dictionary
+        properties.put("c", "3");
+        assertThat(map.get("c")).isEqualTo("3");
+        assertThat(map).hasSize(3);
+    }
+
+    private static BlueprintEvent event(int type, long bundleId) {
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getBundleId()).thenReturn(bundleId);
+        if (type == BlueprintEvent.GRACE_PERIOD) {
+            return new BlueprintEvent(type, bundle, mock(Bundle.class), new String[] { "(objectClass=missing)" });
+        }
+        return new BlueprintEvent(type, bundle, mock(Bundle.class));
+    }
+
+}
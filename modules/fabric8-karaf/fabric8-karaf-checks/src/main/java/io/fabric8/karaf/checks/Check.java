@@ -19,8 +19,20 @@ package io.fabric8.karaf.checks;
 
 public class Check {
 
+    /**
+     * Severity of failing check. Depending on configured aggregation policy, only {@link #CRITICAL} checks
+     * may cause the container to be reported as not healthy/ready, while {@link #WARNING} checks are just reported.
+     */
+    public enum Severity {
+        CRITICAL,
+        WARNING
+    }
+
     public String name;
     public String longDescription;
+    public Severity severity = Severity.CRITICAL;
+    // checks of the same group may be configured together. When not set, name of the checker is used
+    public String group;
 
     public Check() {
     }
@@ -56,4 +68,30 @@ public class Check {
         return this;
     }
 
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    public void setSeverity(Severity severity) {
+        this.severity = severity;
+    }
+
+    public Check severity(Severity severity) {
+        this.severity = severity;
+        return this;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public void setGroup(String group) {
+        this.group = group;
+    }
+
+    public Check group(String group) {
+        this.group = group;
+        return this;
+    }
+
 }
@@ -2,6 +2,11 @@ package io.fabric8.karaf.checks;
 
 import java.util.List;
 
+/**
+ * Service returning failing readiness checks. Each {@link Check} may declare its {@link Check.Severity} (critical
+ * by default) and group - how the checks are aggregated into readiness status is decided by configuration of
+ * <code>io.fabric8.checks</code> PID, which may also override severity of all checks of given checker or group.
+ */
 public interface ReadinessChecker {
     List<Check> getFailingReadinessChecks();
 }
@@ -19,24 +19,96 @@ package io.fabric8.karaf.checks.internal;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.fabric8.karaf.checks.Check;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
 import org.osgi.framework.Constants;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.SynchronousBundleListener;
 import org.osgi.framework.wiring.BundleRevision;
 
-public abstract class AbstractBundleChecker extends AbstractChecker {
+/**
+ * Checker that evaluates bundles one by one. Instead of checking all the bundles on every call, the failing
+ * checks are kept per bundle ID and a bundle is re-evaluated only when its state changes (or when subclass
+ * calls {@link #update(Bundle)} after receiving own events). Full scan is performed only initially and after
+ * {@link #invalidate()}.
+ */
+public abstract class AbstractBundleChecker extends AbstractChecker
+                                            implements SynchronousBundleListener, FrameworkListener {
+
+    private final Map<Long, Check> failingBundles = new ConcurrentHashMap<>();
+    private final AtomicBoolean fullScanNeeded = new AtomicBoolean(true);
+    private final AtomicBoolean tracking = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
 
     @Override
     protected List<Check> doCheck() {
-        List<Check> checks = new ArrayList<>();
-        for (Bundle b : systemBundleContext.getBundles()) {
-            Check check = checkBundle(b);
-            if (check != null) {
-                checks.add(check);
+        if (!closed.get() && tracking.compareAndSet(false, true)) {
+            // listeners are registered lazily, so subclasses are fully constructed when first event arrives
+            bundleContext.addBundleListener(this);
+            bundleContext.addFrameworkListener(this);
+        }
+        if (fullScanNeeded.getAndSet(false)) {
+            for (Bundle b : systemBundleContext.getBundles()) {
+                update(b);
             }
         }
-        return checks;
+        return new ArrayList<>(failingBundles.values());
+    }
+
+    @Override
+    public void bundleChanged(BundleEvent event) {
+        if (event.getType() == BundleEvent.UNINSTALLED) {
+            failingBundles.remove(event.getBundle().getBundleId());
+        } else {
+            update(event.getBundle());
+        }
+    }
+
+    @Override
+    public void frameworkEvent(FrameworkEvent event) {
+        if (event.getType() == FrameworkEvent.PACKAGES_REFRESHED) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Re-evaluates single bundle and updates the set of failing bundles.
+     */
+    protected void update(Bundle bundle) {
+        if (!tracking.get()) {
+            // full scan will be performed anyway
+            return;
+        }
+        Check check = bundle.getState() == Bundle.UNINSTALLED ? null : checkBundle(bundle);
+        if (check == null) {
+            failingBundles.remove(bundle.getBundleId());
+        } else {
+            failingBundles.put(bundle.getBundleId(), check);
+        }
+    }
+
+    /**
+     * Forces re-evaluation of all the bundles during next check.
+     */
+    protected void invalidate() {
+        fullScanNeeded.set(true);
+    }
+
+    @Override
+    public void close() {
+        closed.set(true);
+        if (tracking.compareAndSet(true, false)) {
+            bundleContext.removeBundleListener(this);
+            bundleContext.removeFrameworkListener(this);
+        }
+        failingBundles.clear();
+        fullScanNeeded.set(true);
     }
 
     protected abstract Check checkBundle(Bundle bundle);
@@ -51,5 +51,10 @@ public abstract class AbstractChecker implements io.fabric8.karaf.checks.HealthC
 
     protected abstract List<Check> doCheck();
 
+    /**
+     * Releases listeners and services registered by this checker. Called when the checks service is deactivated.
+     */
+    public void close() {
+    }
 
 }
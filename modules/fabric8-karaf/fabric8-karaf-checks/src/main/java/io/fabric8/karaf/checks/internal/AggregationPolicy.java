@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import io.fabric8.karaf.checks.Check;
+
+/**
+ * Decides which failing checks make the container not healthy/ready:<ul>
+ *     <li>{@link Mode#STRICT} (default) - any failing check, regardless of its severity</li>
+ *     <li>{@link Mode#CRITICAL} - only {@link Check.Severity#CRITICAL critical} checks, warnings are only reported</li>
+ * </ul>
+ * Severity declared by the checker may be overriden for all checks of given group or checker (group takes
+ * precedence).
+ */
+public class AggregationPolicy {
+
+    public enum Mode {
+        STRICT,
+        CRITICAL
+    }
+
+    private volatile Mode mode = Mode.STRICT;
+    private volatile Map<String, Check.Severity> severities = Collections.emptyMap();
+
+    public void configure(Mode mode, Map<String, Check.Severity> severities) {
+        this.mode = mode;
+        this.severities = new HashMap<>(severities);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns the result with effective severity and group set on each check. Checks returned by the checker
+     * are copied when needed, never modified.
+     */
+    public CheckerResult apply(CheckerResult result) {
+        if (result.getChecks().isEmpty()) {
+            return result;
+        }
+        Map<String, Check.Severity> severities = this.severities;
+        List<Check> checks = new ArrayList<>(result.getChecks().size());
+        for (Check check : result.getChecks()) {
+            String group = check.getGroup() != null ? check.getGroup() : result.getChecker();
+            Check.Severity severity = severities.get(group);
+            if (severity == null) {
+                severity = severities.get(result.getChecker());
+            }
+            if (severity == null) {
+                severity = check.getSeverity() != null ? check.getSeverity() : Check.Severity.CRITICAL;
+            }
+            if (severity == check.getSeverity() && group.equals(check.getGroup())) {
+                checks.add(check);
+            } else {
+                checks.add(new Check(check.getName(), check.getLongDescription()).severity(severity).group(group));
+            }
+        }
+        return new CheckerResult(result.getChecker(), checks, result.getDuration());
+    }
+
+    /**
+     * Whether the check (with severity already set by {@link #apply(CheckerResult)}) makes the container
+     * not healthy/ready
+     */
+    public boolean isFailing(Check check) {
+        return mode == Mode.STRICT || check.getSeverity() != Check.Severity.WARNING;
+    }
+
+    public boolean isFailing(CheckerResult result) {
+        for (Check check : result.getChecks()) {
+            if (isFailing(check)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses the value of {@link Mode} or {@link Check.Severity} configuration property
+     * @return parsed value or null if the value isn't valid
+     */
+    public static <E extends Enum<E>> E parse(Class<E> type, Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, value.toString().trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+}
@@ -22,6 +22,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import io.fabric8.karaf.checks.Check;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.blueprint.container.BlueprintEvent;
 import org.osgi.service.blueprint.container.BlueprintListener;
 
@@ -29,14 +30,22 @@ public class BlueprintState extends AbstractBundleChecker
                             implements BlueprintListener {
 
     private final Map<Long, BlueprintEvent> states = new ConcurrentHashMap<>();
+    private final ServiceRegistration<BlueprintListener> registration;
 
     public BlueprintState() {
-        bundleContext.registerService(BlueprintListener.class, this, null);
+        registration = bundleContext.registerService(BlueprintListener.class, this, null);
+    }
+
+    @Override
+    public void close() {
+        registration.unregister();
+        super.close();
     }
 
     @Override
     public void blueprintEvent(BlueprintEvent event) {
         states.put(event.getBundle().getBundleId(), event);
+        update(event.getBundle());
     }
 
     @Override
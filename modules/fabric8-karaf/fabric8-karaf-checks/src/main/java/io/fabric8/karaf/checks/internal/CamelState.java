@@ -17,37 +17,160 @@
 
 package io.fabric8.karaf.checks.internal;
 
+import javax.management.AttributeChangeNotification;
+import javax.management.InstanceNotFoundException;
 import javax.management.MBeanServer;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
+import javax.management.MalformedObjectNameException;
+import javax.management.Notification;
+import javax.management.NotificationBroadcaster;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
 import javax.management.ObjectName;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.fabric8.karaf.checks.Check;
-import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceReference;
 import org.osgi.util.tracker.ServiceTracker;
 
-public class CamelState extends AbstractChecker {
+/**
+ * Checks state of all Camel contexts. States are cached per context {@link ObjectName} and checks are answered
+ * from the cache, which is maintained using notifications:<ul>
+ *     <li>{@link MBeanServerNotification registration notifications} of Camel context MBeans</li>
+ *     <li>{@link AttributeChangeNotification changes} of {@code State} attribute of context MBeans emitting them</li>
+ *     <li>lifecycle events published by Camel JMX event notifiers ({@code org.apache.camel:type=eventnotifiers,*}),
+ *     when they're enabled</li>
+ * </ul>
+ * Only contexts which weren't queried yet or are in transitional state (e.g., {@code Starting}) are queried during
+ * the check, as there may be no notification about the end of the transition. Full rescan of all Camel context
+ * MBeans is performed every {@link #setRescanInterval(long) rescan interval} to detect changes not notified at all.
+ */
+public class CamelState extends AbstractChecker implements NotificationListener {
+
+    private static final ObjectName CAMEL_CONTEXTS;
+    private static final ObjectName CAMEL_EVENT_NOTIFIERS;
+    /** Placeholder state of context which has to be queried */
+    private static final String UNKNOWN = "Unknown";
+    /** States which don't change without notification */
+    private static final Set<String> STABLE_STATES = new HashSet<>(Arrays.asList("Started", "Stopped", "Suspended"));
+    /** States of Camel context after lifecycle events published by JMX event notifier */
+    private static final Map<String, String> EVENT_STATES = new HashMap<>();
+
+    static {
+        try {
+            CAMEL_CONTEXTS = new ObjectName("org.apache.camel:type=context,*");
+            CAMEL_EVENT_NOTIFIERS = new ObjectName("org.apache.camel:type=eventnotifiers,*");
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException(e);
+        }
+        EVENT_STATES.put("CamelContextStartingEvent", "Starting");
+        EVENT_STATES.put("CamelContextStartedEvent", "Started");
+        EVENT_STATES.put("CamelContextStartupFailureEvent", UNKNOWN);
+        EVENT_STATES.put("CamelContextStoppingEvent", "Stopping");
+        EVENT_STATES.put("CamelContextStoppedEvent", "Stopped");
+        EVENT_STATES.put("CamelContextStopFailureEvent", UNKNOWN);
+        EVENT_STATES.put("CamelContextSuspendingEvent", "Suspending");
+        EVENT_STATES.put("CamelContextSuspendedEvent", "Suspended");
+        EVENT_STATES.put("CamelContextResumingEvent", "Starting");
+        EVENT_STATES.put("CamelContextResumedEvent", "Started");
+        EVENT_STATES.put("CamelContextResumeFailureEvent", UNKNOWN);
+    }
 
-    private ServiceTracker<MBeanServer, MBeanServer> mbeanServer;
+    private final ServiceTracker<MBeanServer, MBeanServer> mbeanServer;
+    private final Map<ObjectName, String> states = new ConcurrentHashMap<>();
+    // context and event notifier MBeans this checker listens to
+    private final Set<ObjectName> subscriptions = ConcurrentHashMap.newKeySet();
+
+    private volatile long rescanInterval = 60000L;
+    private volatile long lastRescan;
 
     public CamelState() {
-        this.mbeanServer = new ServiceTracker<>(bundleContext, MBeanServer.class, null);
+        this.mbeanServer = new ServiceTracker<MBeanServer, MBeanServer>(bundleContext, MBeanServer.class, null) {
+            @Override
+            public MBeanServer addingService(ServiceReference<MBeanServer> reference) {
+                MBeanServer server = super.addingService(reference);
+                subscribe(server);
+                return server;
+            }
+
+            @Override
+            public void removedService(ServiceReference<MBeanServer> reference, MBeanServer server) {
+                unsubscribe(server);
+                super.removedService(reference, server);
+            }
+        };
         this.mbeanServer.open();
     }
 
+    @Override
+    public void close() {
+        // removes notification listeners from tracked MBeanServer
+        mbeanServer.close();
+    }
+
+    /**
+     * Sets the interval (in milliseconds) of full rescan of Camel context MBeans
+     */
+    public void setRescanInterval(long rescanInterval) {
+        this.rescanInterval = rescanInterval;
+    }
+
+    /**
+     * Returns last known state of Camel contexts (keyed by context MBean name) without querying the MBeans. Contexts
+     * which were registered, but not queried yet, are not included.
+     */
+    public Map<ObjectName, String> getContextStates() {
+        Map<ObjectName, String> result = new HashMap<>();
+        for (Map.Entry<ObjectName, String> entry : states.entrySet()) {
+            if (!UNKNOWN.equals(entry.getValue())) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the (unquoted) value of the given key property of Camel MBean name, e.g., {@code name} or
+     * {@code context} (the management name, which is unique even if several contexts share the same name)
+     */
+    public static String getKeyProperty(ObjectName name, String key) {
+        String value = name.getKeyProperty(key);
+        if (value != null && value.length() > 1 && value.charAt(0) == '"') {
+            return ObjectName.unquote(value);
+        }
+        return value;
+    }
+
     @Override
     protected List<Check> doCheck() {
         MBeanServer server = this.mbeanServer.getService();
         if (server != null) {
             try {
+                if (lastRescan == 0L || System.currentTimeMillis() - lastRescan > rescanInterval) {
+                    rescan(server);
+                }
                 List<Check> checks = new ArrayList<>();
-                Set<ObjectName> contexts = server.queryNames(new ObjectName("org.apache.camel:type=context,*"), null);
-                for (ObjectName ctxName : contexts) {
-                    String state = server.getAttribute(ctxName, "State").toString();
+                for (Map.Entry<ObjectName, String> entry : states.entrySet()) {
+                    ObjectName ctxName = entry.getKey();
+                    String state = entry.getValue();
+                    if (!STABLE_STATES.contains(state)) {
+                        // end of the transition may not be notified
+                        state = queryState(server, ctxName);
+                        if (state == null) {
+                            continue;
+                        }
+                    }
                     if (!"Started".equals(state)) {
-                        String name = ctxName.getKeyProperty("name");
+                        String name = getKeyProperty(ctxName, "name");
                         checks.add(new Check("camel-state", "Camel context " + name + " is in state " + state));
                     }
                 }
@@ -58,4 +181,117 @@ public class CamelState extends AbstractChecker {
         }
         return Collections.emptyList();
     }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (notification instanceof MBeanServerNotification) {
+            ObjectName name = ((MBeanServerNotification) notification).getMBeanName();
+            if (MBeanServerNotification.UNREGISTRATION_NOTIFICATION.equals(notification.getType())) {
+                states.remove(name);
+                subscriptions.remove(name);
+            } else if (MBeanServerNotification.REGISTRATION_NOTIFICATION.equals(notification.getType())) {
+                if (CAMEL_CONTEXTS.apply(name)) {
+                    // state will be queried during next check
+                    states.put(name, UNKNOWN);
+                }
+                MBeanServer server = mbeanServer.getService();
+                if (server != null) {
+                    listen(server, name);
+                }
+            }
+        } else if (notification instanceof AttributeChangeNotification && handback instanceof ObjectName) {
+            AttributeChangeNotification change = (AttributeChangeNotification) notification;
+            if ("State".equals(change.getAttributeName()) && change.getNewValue() != null) {
+                states.replace((ObjectName) handback, change.getNewValue().toString());
+            }
+        } else if (handback instanceof ObjectName && EVENT_STATES.containsKey(notification.getType())) {
+            // event notifier is registered with the same management name as its context
+            String context = ((ObjectName) handback).getKeyProperty("context");
+            String state = EVENT_STATES.get(notification.getType());
+            for (ObjectName ctxName : states.keySet()) {
+                if (context != null && context.equals(ctxName.getKeyProperty("context"))) {
+                    states.replace(ctxName, state);
+                }
+            }
+        }
+    }
+
+    private void subscribe(MBeanServer server) {
+        NotificationFilter filter = n -> n instanceof MBeanServerNotification
+                && (CAMEL_CONTEXTS.apply(((MBeanServerNotification) n).getMBeanName())
+                    || CAMEL_EVENT_NOTIFIERS.apply(((MBeanServerNotification) n).getMBeanName()));
+        try {
+            server.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this, filter, null);
+        } catch (InstanceNotFoundException e) {
+            // can't happen - delegate is always registered
+        }
+        lastRescan = 0L;
+    }
+
+    private void unsubscribe(MBeanServer server) {
+        try {
+            server.removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this);
+        } catch (Exception ignored) {
+        }
+        for (ObjectName name : subscriptions) {
+            try {
+                server.removeNotificationListener(name, this);
+            } catch (Exception ignored) {
+                // MBean already unregistered or not a broadcaster
+            }
+        }
+        subscriptions.clear();
+        states.clear();
+    }
+
+    /**
+     * Listens to state changes published by Camel context or event notifier MBean, if it emits notifications
+     */
+    private void listen(MBeanServer server, ObjectName name) {
+        if (!subscriptions.add(name)) {
+            return;
+        }
+        try {
+            if (server.isInstanceOf(name, NotificationBroadcaster.class.getName())) {
+                NotificationFilter filter = CAMEL_CONTEXTS.apply(name)
+                        ? n -> n instanceof AttributeChangeNotification
+                        : n -> EVENT_STATES.containsKey(n.getType());
+                server.addNotificationListener(name, this, filter, name);
+            }
+        } catch (InstanceNotFoundException e) {
+            subscriptions.remove(name);
+        }
+    }
+
+    private void rescan(MBeanServer server) throws Exception {
+        for (ObjectName notifier : server.queryNames(CAMEL_EVENT_NOTIFIERS, null)) {
+            listen(server, notifier);
+        }
+        Set<ObjectName> contexts = server.queryNames(CAMEL_CONTEXTS, null);
+        states.keySet().retainAll(contexts);
+        for (ObjectName ctxName : contexts) {
+            listen(server, ctxName);
+            String state = queryState(server, ctxName);
+            if (state != null) {
+                states.put(ctxName, state);
+            }
+        }
+        lastRescan = System.currentTimeMillis();
+    }
+
+    /**
+     * Queries the state of single Camel context and updates the cache. Returns {@code null} if the context
+     * MBean is no longer registered.
+     */
+    private String queryState(MBeanServer server, ObjectName ctxName) throws Exception {
+        try {
+            String state = server.getAttribute(ctxName, "State").toString();
+            states.replace(ctxName, state);
+            return state;
+        } catch (InstanceNotFoundException e) {
+            states.remove(ctxName);
+            return null;
+        }
+    }
+
 }
@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.fabric8.karaf.checks.Check;
+
+/**
+ * Failing checks returned by single checker together with the time it took to evaluate them.
+ */
+public final class CheckerResult {
+
+    private final String checker;
+    private final List<Check> checks;
+    private final long duration;
+
+    public CheckerResult(String checker, List<Check> checks, long duration) {
+        this.checker = checker;
+        this.checks = checks == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(checks));
+        this.duration = duration;
+    }
+
+    /**
+     * @return name of the checker, as returned by {@link ChecksEvaluator#getCheckerName(Object)}
+     */
+    public String getChecker() {
+        return checker;
+    }
+
+    public List<Check> getChecks() {
+        return checks;
+    }
+
+    /**
+     * @return evaluation time in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+}
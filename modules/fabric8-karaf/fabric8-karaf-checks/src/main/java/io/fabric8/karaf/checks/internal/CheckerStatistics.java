@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cumulative statistics of invocations of single checker.
+ */
+public class CheckerStatistics {
+
+    /** Upper bounds (inclusive, in milliseconds) of histogram buckets. Last bucket counts all longer invocations */
+    public static final long[] BUCKETS = new long[] { 5L, 10L, 25L, 50L, 100L, 250L, 500L, 1000L, 2500L, 5000L, 10000L };
+
+    private final AtomicLong invocations = new AtomicLong();
+    private final AtomicLong totalDuration = new AtomicLong();
+    private final AtomicLong maxDuration = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS.length + 1);
+
+    void record(long duration) {
+        invocations.incrementAndGet();
+        totalDuration.addAndGet(duration);
+        maxDuration.accumulateAndGet(duration, Math::max);
+        int bucket = 0;
+        while (bucket < BUCKETS.length && duration > BUCKETS[bucket]) {
+            bucket++;
+        }
+        histogram.incrementAndGet(bucket);
+    }
+
+    void recordTimeout() {
+        timeouts.incrementAndGet();
+    }
+
+    void recordError() {
+        errors.incrementAndGet();
+    }
+
+    public long getInvocations() {
+        return invocations.get();
+    }
+
+    public long getTotalDuration() {
+        return totalDuration.get();
+    }
+
+    public long getMaxDuration() {
+        return maxDuration.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * @return number of invocations per {@link #BUCKETS duration bucket} (not cumulative)
+     */
+    public long[] getHistogram() {
+        long[] result = new long[histogram.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = histogram.get(i);
+        }
+        return result;
+    }
+
+}
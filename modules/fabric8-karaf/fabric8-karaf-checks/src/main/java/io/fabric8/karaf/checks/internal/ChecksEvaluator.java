@@ -0,0 +1,434 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fabric8.karaf.checks.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.fabric8.karaf.checks.Check;
+import io.fabric8.karaf.checks.HealthChecker;
+import io.fabric8.karaf.checks.ReadinessChecker;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Evaluates all registered checkers in a background thread and keeps the last result as an immutable
+ * {@link ChecksSnapshot}, so HTTP probes don't have to call the checkers themselves.
+ * <p/>
+ * Evaluation happens every {@code interval} milliseconds and shortly after bundle/framework events. If the
+ * snapshot is older than {@code maxStaleness} (e.g., the scheduler is stuck), it's recomputed synchronously.
+ * When the scheduler is not started, every call to {@link #getSnapshot()} evaluates the checkers directly.
+ * <p/>
+ * When {@link #configureExecution(int, long, Map) configured}, checkers are invoked in parallel using bounded
+ * pool of worker threads and each checker has its own deadline. Checkers that don't finish in time are reported
+ * with {@link #CHECKER_TIMEOUT} check, so the total evaluation time is bounded by the longest allowed timeout
+ * and not by the sum of all checker invocation times.
+ */
+public class ChecksEvaluator implements BundleListener, FrameworkListener {
+
+    public static final Logger LOG = LoggerFactory.getLogger(ChecksEvaluator.class);
+
+    /** Delay used to coalesce bursts of OSGi events (e.g., during feature installation) into single evaluation */
+    private static final long EVENT_DELAY = 100L;
+
+    /** Name of the {@link Check} reported for checkers that didn't finish before their deadline */
+    public static final String CHECKER_TIMEOUT = "checker-timeout";
+    /** Name of the {@link Check} reported for checkers that threw an exception */
+    public static final String CHECKER_ERROR = "checker-error";
+
+    private final CopyOnWriteArrayList<HealthChecker> healthCheckers;
+    private final CopyOnWriteArrayList<ReadinessChecker> readinessCheckers;
+
+    private final AtomicReference<ChecksSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicBoolean evaluationPending = new AtomicBoolean();
+    /** Evaluation in progress, shared by all the callers which need the checkers evaluated */
+    private final AtomicReference<CompletableFuture<ChecksSnapshot>> evaluation = new AtomicReference<>();
+
+    /** Invocations of checkers that are still running - a hung checker is awaited again instead of resubmitted */
+    private final Map<String, Future<CheckerResult>> running = new ConcurrentHashMap<>();
+    /** Keys assigned to checker instances, see {@link #getCheckerKey(Object)} */
+    private final Map<Object, String> checkerKeys = new WeakHashMap<>();
+    /** Number of keys assigned to instances of each checker class */
+    private final Map<String, Integer> checkerKeyCounts = new HashMap<>();
+    private final ChecksStatistics statistics = new ChecksStatistics();
+    private final AggregationPolicy aggregationPolicy = new AggregationPolicy();
+    private final ReadinessGate readinessGate = new ReadinessGate(aggregationPolicy);
+
+    private volatile ScheduledExecutorService scheduler;
+    private volatile long maxStaleness;
+    private BundleContext bundleContext;
+
+    private volatile ExecutorService workers;
+    private volatile long defaultTimeout;
+    private volatile Map<String, Long> checkerTimeouts = Collections.emptyMap();
+
+    public ChecksEvaluator(CopyOnWriteArrayList<HealthChecker> healthCheckers,
+                           CopyOnWriteArrayList<ReadinessChecker> readinessCheckers) {
+        this.healthCheckers = healthCheckers;
+        this.readinessCheckers = readinessCheckers;
+    }
+
+    /**
+     * Starts background evaluation of the checkers
+     * @param bundleContext context used to listen to bundle and framework events
+     * @param interval interval (in milliseconds) between evaluations
+     * @param maxStaleness maximum age (in milliseconds) of a snapshot that may be returned to the probes
+     */
+    public synchronized void start(BundleContext bundleContext, long interval, long maxStaleness) {
+        this.bundleContext = bundleContext;
+        this.maxStaleness = Math.max(maxStaleness, interval);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fabric8-karaf-checks");
+            t.setDaemon(true);
+            return t;
+        });
+        this.scheduler.scheduleWithFixedDelay(() -> evaluateSafely(true), 0, interval, TimeUnit.MILLISECONDS);
+        bundleContext.addBundleListener(this);
+        bundleContext.addFrameworkListener(this);
+    }
+
+    /**
+     * Configures parallel execution of the checkers
+     * @param threads maximum number of threads invoking the checkers
+     * @param defaultTimeout default time (in milliseconds) after which checker is reported as timed out
+     * @param checkerTimeouts timeouts (in milliseconds) for particular checkers, keyed by {@link #getCheckerKey(Object)}
+     * or {@link #getCheckerName(Object)}
+     */
+    public synchronized void configureExecution(int threads, long defaultTimeout, Map<String, Long> checkerTimeouts) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "fabric8-karaf-checks-worker-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        this.defaultTimeout = defaultTimeout;
+        this.checkerTimeouts = new HashMap<>(checkerTimeouts);
+        this.workers = pool;
+    }
+
+    public synchronized void stop() {
+        if (bundleContext != null) {
+            try {
+                bundleContext.removeBundleListener(this);
+                bundleContext.removeFrameworkListener(this);
+            } catch (IllegalStateException ignored) {
+                // bundle context already invalid
+            }
+            bundleContext = null;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+            workers = null;
+        }
+        running.clear();
+        snapshot.set(null);
+    }
+
+    /**
+     * Returns current snapshot of check results, computing new one if there's none or if it's too old.
+     */
+    public ChecksSnapshot getSnapshot() {
+        ChecksSnapshot current = getCachedSnapshot();
+        return current != null ? current : evaluate();
+    }
+
+    /**
+     * Returns current snapshot of check results only if it's fresh enough, without evaluating the checkers.
+     * @return cached snapshot or {@code null} if the checkers have to be evaluated
+     */
+    public ChecksSnapshot getCachedSnapshot() {
+        ChecksSnapshot current = snapshot.get();
+        if (scheduler == null || current == null
+                || current.isOlderThan(maxStaleness, System.currentTimeMillis())) {
+            return null;
+        }
+        return current;
+    }
+
+    /**
+     * Schedules (soon, but not immediately) new evaluation of the checkers, unless one is already pending.
+     */
+    public void requestEvaluation() {
+        ScheduledExecutorService s = scheduler;
+        if (s != null && evaluationPending.compareAndSet(false, true)) {
+            try {
+                s.schedule(() -> {
+                    evaluationPending.set(false);
+                    evaluateSafely(false);
+                }, EVENT_DELAY, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                // scheduler is being shut down
+                evaluationPending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Synchronously evaluates all the checkers and stores the result as current snapshot. When background
+     * evaluation is running, this evaluation doesn't count towards {@link ReadinessGate} thresholds.
+     */
+    public ChecksSnapshot evaluate() {
+        return evaluate(scheduler == null);
+    }
+
+    /**
+     * Evaluates all the checkers, unless another evaluation is in progress, in which case its result is awaited,
+     * so a burst of probes finding stale snapshot invokes the checkers only once. Only scheduled evaluations (or all
+     * of them, when there's no scheduler) are counted by {@link ReadinessGate}, so event-triggered and
+     * probe-triggered evaluations don't speed up the thresholds.
+     * @param scheduled whether this is periodic evaluation
+     */
+    private ChecksSnapshot evaluate(boolean scheduled) {
+        CompletableFuture<ChecksSnapshot> future = new CompletableFuture<>();
+        while (!evaluation.compareAndSet(null, future)) {
+            CompletableFuture<ChecksSnapshot> existing = evaluation.get();
+            if (existing != null) {
+                return await(existing);
+            }
+        }
+        try {
+            ChecksSnapshot result = doEvaluate(scheduled);
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            evaluation.compareAndSet(future, null);
+        }
+    }
+
+    private ChecksSnapshot doEvaluate(boolean scheduled) {
+        long start = System.currentTimeMillis();
+        ExecutorService pool = workers;
+        Map<Object, Future<CheckerResult>> health = new LinkedHashMap<>();
+        for (HealthChecker checker : healthCheckers) {
+            health.put(checker, submit(pool, "health:", checker, checker::getFailingHealthChecks));
+        }
+        Map<Object, Future<CheckerResult>> readiness = new LinkedHashMap<>();
+        for (ReadinessChecker checker : readinessCheckers) {
+            if (checker instanceof AbstractChecker && health.containsKey(checker)) {
+                // built-in checkers return the same result for both kinds of checks
+                readiness.put(checker, health.get(checker));
+            } else {
+                readiness.put(checker, submit(pool, "readiness:", checker, checker::getFailingReadinessChecks));
+            }
+        }
+
+        List<CheckerResult> healthResults = new ArrayList<>();
+        Map<Object, CheckerResult> results = new HashMap<>();
+        for (Map.Entry<Object, Future<CheckerResult>> e : health.entrySet()) {
+            CheckerResult result = aggregationPolicy.apply(await(e.getKey(), e.getValue(), start));
+            results.put(e.getKey(), result);
+            healthResults.add(result);
+        }
+        List<CheckerResult> readinessResults = new ArrayList<>();
+        for (Map.Entry<Object, Future<CheckerResult>> e : readiness.entrySet()) {
+            readinessResults.add(e.getValue() == health.get(e.getKey()) ? results.get(e.getKey())
+                    : aggregationPolicy.apply(await(e.getKey(), e.getValue(), start)));
+        }
+
+        long end = System.currentTimeMillis();
+        boolean ready = readinessGate.apply(readinessResults, end, scheduled);
+        statistics.recordEvaluation(end - start);
+        ChecksSnapshot result = new ChecksSnapshot(healthResults, readinessResults, ready, end, end - start,
+                aggregationPolicy);
+        snapshot.set(result);
+        return result;
+    }
+
+    public AggregationPolicy getAggregationPolicy() {
+        return aggregationPolicy;
+    }
+
+    public ReadinessGate getReadinessGate() {
+        return readinessGate;
+    }
+
+    public ChecksStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the name used to display the checker in reported checks. The name doesn't have to be unique -
+     * use {@link #getCheckerKey(Object)} to identify the checker.
+     */
+    public static String getCheckerName(Object checker) {
+        Class<?> type = checker.getClass();
+        String name = type.getSimpleName();
+        // anonymous classes have no simple name and lambdas have a synthetic one
+        return name.isEmpty() || type.isSynthetic() ? type.getName() : name;
+    }
+
+    /**
+     * Returns the key identifying the checker in statistics, timeout configuration and running invocations - the
+     * fully qualified class name, with a sequence number appended for additional instances of the same class.
+     */
+    public String getCheckerKey(Object checker) {
+        synchronized (checkerKeys) {
+            String key = checkerKeys.get(checker);
+            if (key == null) {
+                String className = checker.getClass().getName();
+                int count = checkerKeyCounts.merge(className, 1, Integer::sum);
+                key = count == 1 ? className : className + "#" + count;
+                checkerKeys.put(checker, key);
+            }
+            return key;
+        }
+    }
+
+    private Future<CheckerResult> submit(ExecutorService pool, String kind, Object checker, Callable<List<Check>> invocation) {
+        String name = getCheckerName(checker);
+        CheckerStatistics stats = statistics.getCheckerStatistics(getCheckerKey(checker));
+        Callable<CheckerResult> timed = () -> {
+            long start = System.currentTimeMillis();
+            try {
+                List<Check> checks = invocation.call();
+                long duration = System.currentTimeMillis() - start;
+                stats.record(duration);
+                return new CheckerResult(name, checks, duration);
+            } catch (Exception e) {
+                stats.recordError();
+                throw e;
+            }
+        };
+        if (pool == null) {
+            // not configured for parallel execution - invoke the checker directly
+            FutureTask<CheckerResult> task = new FutureTask<>(timed);
+            task.run();
+            return task;
+        }
+        String key = kind + getCheckerKey(checker);
+        Future<CheckerResult> previous = running.get(key);
+        if (previous != null && !previous.isDone()) {
+            return previous;
+        }
+        try {
+            Future<CheckerResult> future = pool.submit(timed);
+            running.put(key, future);
+            return future;
+        } catch (RejectedExecutionException e) {
+            // evaluator is being stopped
+            FutureTask<CheckerResult> task = new FutureTask<>(timed);
+            task.run();
+            return task;
+        }
+    }
+
+    private CheckerResult await(Object checker, Future<CheckerResult> future, long start) {
+        String name = getCheckerName(checker);
+        String key = getCheckerKey(checker);
+        Long configured = checkerTimeouts.get(key);
+        if (configured == null) {
+            configured = checkerTimeouts.get(checker.getClass().getName());
+        }
+        long timeout = configured != null ? configured : checkerTimeouts.getOrDefault(name, defaultTimeout);
+        try {
+            if (timeout <= 0 || workers == null) {
+                return future.get();
+            }
+            long remaining = start + timeout - System.currentTimeMillis();
+            return future.get(Math.max(remaining, 0L), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            statistics.getCheckerStatistics(key).recordTimeout();
+            return failure(name, start, new Check(CHECKER_TIMEOUT, "Checker " + name + " did not complete within " + timeout + "ms"));
+        } catch (ExecutionException e) {
+            LOG.debug("Checker {} failed", name, e.getCause());
+            return failure(name, start, new Check(CHECKER_ERROR, "Checker " + name + " failed: " + e.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failure(name, start, new Check(CHECKER_ERROR, "Checker " + name + " was interrupted"));
+        }
+    }
+
+    private static ChecksSnapshot await(CompletableFuture<ChecksSnapshot> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for evaluation of the checks", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private CheckerResult failure(String name, long start, Check check) {
+        return new CheckerResult(name, Collections.singletonList(check), System.currentTimeMillis() - start);
+    }
+
+    private void evaluateSafely(boolean scheduled) {
+        try {
+            evaluate(scheduled);
+        } catch (Throwable t) {
+            LOG.warn("Error evaluating health and readiness checks: {}", t.getMessage(), t);
+        }
+    }
+
+    @Override
+    public void bundleChanged(BundleEvent event) {
+        requestEvaluation();
+    }
+
+    @Override
+    public void frameworkEvent(FrameworkEvent event) {
+        if (event.getType() == FrameworkEvent.STARTED || event.getType() == FrameworkEvent.STARTLEVEL_CHANGED) {
+            requestEvaluation();
+        }
+    }
+
+}
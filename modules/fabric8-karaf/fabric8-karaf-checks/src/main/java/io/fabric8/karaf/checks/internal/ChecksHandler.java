@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+
+/**
+ * Plain Undertow {@link HttpHandler} serving health or readiness checks without servlet container. Cached
+ * {@link ChecksSnapshot} is rendered directly in IO thread - the request is dispatched to worker thread only
+ * when the checkers have to be evaluated synchronously.
+ */
+public class ChecksHandler implements HttpHandler {
+
+    private final ChecksEvaluator evaluator;
+    private final ChecksResponse.Type type;
+
+    public ChecksHandler(ChecksEvaluator evaluator, ChecksResponse.Type type) {
+        this.evaluator = evaluator;
+        this.type = type;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (!Methods.GET.equals(exchange.getRequestMethod()) && !Methods.HEAD.equals(exchange.getRequestMethod())) {
+            exchange.setStatusCode(405);
+            exchange.getResponseHeaders().put(Headers.ALLOW, "GET, HEAD");
+            exchange.endExchange();
+            return;
+        }
+        ChecksSnapshot snapshot = evaluator.getCachedSnapshot();
+        if (snapshot == null) {
+            if (exchange.isInIoThread()) {
+                // evaluation of the checkers may block
+                exchange.dispatch(this);
+                return;
+            }
+            snapshot = evaluator.getSnapshot();
+        }
+        boolean json = ChecksJson.accepts(exchange.getRequestHeaders().getFirst(Headers.ACCEPT));
+        ChecksResponse response = ChecksResponse.create(type, snapshot, json);
+        exchange.setStatusCode(response.getStatus());
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, response.getContentType());
+        exchange.getResponseSender().send(response.getBody());
+    }
+
+}
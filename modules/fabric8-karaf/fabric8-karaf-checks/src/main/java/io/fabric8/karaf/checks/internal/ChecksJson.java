@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+
+import io.fabric8.karaf.checks.Check;
+
+/**
+ * Renders results of health/readiness checks as JSON document.
+ */
+public final class ChecksJson {
+
+    public static final String CONTENT_TYPE = "application/json";
+
+    private ChecksJson() {
+    }
+
+    /**
+     * Checks whether the client prefers JSON response, based on <code>Accept</code> header
+     */
+    public static boolean accepts(String acceptHeader) {
+        return acceptHeader != null && acceptHeader.contains(CONTENT_TYPE);
+    }
+
+    public static void write(PrintWriter writer, String status, ChecksSnapshot snapshot, List<CheckerResult> results) {
+        writer.print("{\"status\":\"");
+        writer.print(status);
+        writer.print("\",\"timestamp\":");
+        writer.print(snapshot.getTimestamp());
+        writer.print(",\"duration\":");
+        writer.print(snapshot.getDuration());
+        writer.print(",\"checkers\":[");
+        boolean firstResult = true;
+        for (CheckerResult result : results) {
+            if (!firstResult) {
+                writer.print(',');
+            }
+            firstResult = false;
+            writer.print("{\"name\":");
+            string(writer, result.getChecker());
+            writer.print(",\"duration\":");
+            writer.print(result.getDuration());
+            writer.print(",\"checks\":[");
+            boolean firstCheck = true;
+            for (Check check : result.getChecks()) {
+                if (!firstCheck) {
+                    writer.print(',');
+                }
+                firstCheck = false;
+                writer.print("{\"name\":");
+                string(writer, check.getName());
+                writer.print(",\"description\":");
+                string(writer, check.getLongDescription());
+                writer.print(",\"severity\":");
+                string(writer, check.getSeverity() == null ? null : check.getSeverity().name().toLowerCase(Locale.ENGLISH));
+                writer.print(",\"group\":");
+                string(writer, check.getGroup());
+                writer.print('}');
+            }
+            writer.print("]}");
+        }
+        writer.println("]}");
+    }
+
+    private static void string(PrintWriter writer, String value) {
+        if (value == null) {
+            writer.print("null");
+            return;
+        }
+        writer.print('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.print("\\\"");
+                    break;
+                case '\\':
+                    writer.print("\\\\");
+                    break;
+                case '\n':
+                    writer.print("\\n");
+                    break;
+                case '\r':
+                    writer.print("\\r");
+                    break;
+                case '\t':
+                    writer.print("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.printf("\\u%04x", (int) c);
+                    } else {
+                        writer.print(c);
+                    }
+            }
+        }
+        writer.print('"');
+    }
+
+}
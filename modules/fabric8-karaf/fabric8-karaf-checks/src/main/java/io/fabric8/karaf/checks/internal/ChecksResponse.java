@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+
+import io.fabric8.karaf.checks.Check;
+
+/**
+ * Response to health or readiness probe rendered from {@link ChecksSnapshot}, shared by the servlets and
+ * plain Undertow handlers.
+ */
+public final class ChecksResponse {
+
+    public static final String TEXT_CONTENT_TYPE = "text/plain";
+
+    public enum Type {
+        HEALTH("HEALTHY", "NOT HEALTHY"),
+        READINESS("READY", "NOT READY");
+
+        private final String success;
+        private final String failure;
+
+        Type(String success, String failure) {
+            this.success = success;
+            this.failure = failure;
+        }
+
+        List<Check> getFailingChecks(ChecksSnapshot snapshot) {
+            return this == HEALTH ? snapshot.getFailingHealthChecks() : snapshot.getFailingReadinessChecks();
+        }
+
+        boolean isSuccess(ChecksSnapshot snapshot) {
+            return this == HEALTH ? snapshot.isHealthy() : snapshot.isReady();
+        }
+
+        List<Check> getWarnings(ChecksSnapshot snapshot) {
+            return this == HEALTH ? snapshot.getHealthWarnings() : snapshot.getReadinessWarnings();
+        }
+
+        List<CheckerResult> getResults(ChecksSnapshot snapshot) {
+            return this == HEALTH ? snapshot.getHealthResults() : snapshot.getReadinessResults();
+        }
+    }
+
+    private final int status;
+    private final String contentType;
+    private final String body;
+
+    private ChecksResponse(int status, String contentType, String body) {
+        this.status = status;
+        this.contentType = contentType;
+        this.body = body;
+    }
+
+    /**
+     * Renders the response
+     * @param type whether health or readiness checks should be reported
+     * @param snapshot results of the checks
+     * @param json whether JSON response should be rendered instead of plain text
+     */
+    public static ChecksResponse create(Type type, ChecksSnapshot snapshot, boolean json) {
+        List<Check> checks = type.getFailingChecks(snapshot);
+        boolean success = type.isSuccess(snapshot);
+        String status = success ? type.success : type.failure;
+        StringWriter sw = new StringWriter();
+        PrintWriter writer = new PrintWriter(sw);
+        if (json) {
+            ChecksJson.write(writer, status, snapshot, type.getResults(snapshot));
+        } else {
+            writer.println(status);
+            for (Check check : checks) {
+                writer.println(check.getName() + ": " + check.getLongDescription());
+            }
+            for (Check check : type.getWarnings(snapshot)) {
+                writer.println("WARNING " + check.getName() + ": " + check.getLongDescription());
+            }
+        }
+        writer.flush();
+        return new ChecksResponse(success ? 200 : 503, json ? ChecksJson.CONTENT_TYPE : TEXT_CONTENT_TYPE, sw.toString());
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+}
@@ -17,11 +17,18 @@
 
 package io.fabric8.karaf.checks.internal;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 
+import io.fabric8.karaf.checks.Check;
 import io.fabric8.karaf.checks.HealthChecker;
 import io.fabric8.karaf.checks.ReadinessChecker;
 import io.undertow.Handlers;
@@ -34,6 +41,7 @@ import io.undertow.servlet.api.DeploymentManager;
 import io.undertow.servlet.api.ServletContainer;
 import io.undertow.servlet.api.ServletInfo;
 import io.undertow.servlet.util.ImmediateInstanceFactory;
+import org.osgi.framework.BundleContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
@@ -61,8 +69,30 @@ public class ChecksService {
     @Reference(service = HealthChecker.class, cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC)
     final CopyOnWriteArrayList<HealthChecker> healthCheckers = new CopyOnWriteArrayList<>();
 
+    final ChecksEvaluator evaluator = new ChecksEvaluator(healthCheckers, readinessCheckers);
+    private final CamelState camelState;
+    // checkers created by this service, closed on deactivation
+    private final List<AbstractChecker> checkers = new ArrayList<>();
+
     String readinessCheckPath = "/readiness-check";
     String healthCheckPath = "/health-check";
+    // Prometheus metrics are exposed only when this path is configured
+    String metricsPath = null;
+
+    // interval between background evaluations of the checkers. 0 or less means checkers are called on each request
+    long checkInterval = 5000L;
+    // maximum age of cached check results returned to probes
+    long maxStaleness = 15000L;
+    // number of threads invoking the checkers in parallel
+    int checkThreads = 4;
+    // default time after which checker is reported as timed out. Can be overriden using checkTimeout.<checker> properties
+    long checkTimeout = 3000L;
+
+    // configuration of embedded Undertow used when httpPort is set
+    int ioThreads = 2;
+    int workerThreads = 4;
+    // whether to deploy the servlets instead of serving the checks with plain Undertow handlers
+    boolean useServlets = false;
 
     // port set in @Activate
     private int port;
@@ -87,10 +117,12 @@ public class ChecksService {
         } catch (Throwable t) {
             // Ignore
         }
-        bind(new CamelState());
+        camelState = new CamelState();
+        bind(camelState);
     }
 
-    private void bind(Object checker) {
+    private void bind(AbstractChecker checker) {
+        checkers.add(checker);
         if (checker instanceof ReadinessChecker) {
             bindReadinessCheckers((ReadinessChecker) checker);
         }
@@ -100,7 +132,7 @@ public class ChecksService {
     }
 
     @Activate
-    void activate(Map<String, ?> configuration) throws ServletException, NamespaceException {
+    void activate(BundleContext context, Map<String, ?> configuration) throws ServletException, NamespaceException {
         String httpPort = (String) configuration.get("httpPort");
         this.port = -1;
         if (httpPort != null && !"".equals(httpPort.trim())) {
@@ -130,52 +162,117 @@ public class ChecksService {
             }
         }
 
+        String mURI = (String) configuration.get("metricsPath");
+        metricsPath = null;
+        if (mURI != null && !"".equals(mURI.trim())) {
+            if (!mURI.startsWith("/")) {
+                LOG.warn("Metrics URI doesn't start with \"/\", metrics won't be exposed.");
+            } else {
+                metricsPath = mURI.trim();
+            }
+        }
+        PrometheusMetrics metrics = new PrometheusMetrics(evaluator, camelState, context);
+
+        checkInterval = getLong(configuration, "checkInterval", checkInterval);
+        maxStaleness = getLong(configuration, "maxStaleness", maxStaleness);
+        checkThreads = (int) getLong(configuration, "checkThreads", checkThreads);
+        checkTimeout = getLong(configuration, "checkTimeout", checkTimeout);
+        Map<String, Long> checkerTimeouts = new HashMap<>();
+        for (String key : configuration.keySet()) {
+            if (key.startsWith("checkTimeout.")) {
+                checkerTimeouts.put(key.substring("checkTimeout.".length()), getLong(configuration, key, checkTimeout));
+            }
+        }
+        evaluator.configureExecution(Math.max(checkThreads, 1), checkTimeout, checkerTimeouts);
+        evaluator.getReadinessGate().configure((int) getLong(configuration, "readinessFailureThreshold", 1L),
+                (int) getLong(configuration, "readinessSuccessThreshold", 1L),
+                getLong(configuration, "startupGracePeriod", 0L));
+        configureAggregation(configuration);
+        camelState.setRescanInterval(getLong(configuration, "camelRescanInterval", 60000L));
+        registerStatistics();
+        if (checkInterval > 0) {
+            LOG.info("Evaluating health and readiness checks every {}ms (max staleness: {}ms)", checkInterval, maxStaleness);
+            evaluator.start(context, checkInterval, maxStaleness);
+        }
+
         if (this.port == -1) {
             // register into built-in HttpService
             LOG.info("Starting health check service in built-in server and {} URI", healthCheckPath);
-            httpService.registerServlet(healthCheckPath, new HealthCheckServlet(healthCheckers), null, null);
+            httpService.registerServlet(healthCheckPath, new HealthCheckServlet(evaluator), null, null);
             LOG.info("Starting readiness check service in built-in server and {} URI", readinessCheckPath);
-            httpService.registerServlet(readinessCheckPath, new ReadinessCheckServlet(readinessCheckers), null, null);
+            httpService.registerServlet(readinessCheckPath, new ReadinessCheckServlet(evaluator), null, null);
+            if (metricsPath != null) {
+                LOG.info("Starting metrics service in built-in server and {} URI", metricsPath);
+                httpService.registerServlet(metricsPath, new MetricsServlet(evaluator, metrics), null, null);
+            }
         } else {
-            // create embedded, but simple Undertow instance to register the servlets
+            ioThreads = (int) getLong(configuration, "ioThreads", ioThreads);
+            workerThreads = (int) getLong(configuration, "workerThreads", workerThreads);
+            Object servlets = configuration.get("useServlets");
+            useServlets = servlets != null && Boolean.parseBoolean(servlets.toString().trim());
+
+            // create embedded, but simple Undertow instance to register the servlets or handlers
             PathHandler path = Handlers.path();
             this.server = Undertow.builder()
                     .addHttpListener(this.port, "0.0.0.0")
                     .setHandler(path)
-                    .setIoThreads(2)     // defaults to Math.max(Runtime.getRuntime().availableProcessors(), 2);
-                    .setWorkerThreads(4) // defaults to ioThreads * 8
+                    .setIoThreads(ioThreads)         // defaults to Math.max(Runtime.getRuntime().availableProcessors(), 2);
+                    .setWorkerThreads(workerThreads) // defaults to ioThreads * 8
                     .build();
 
-            HttpServlet hcs = new HealthCheckServlet(healthCheckers);
-            HttpServlet rcs = new ReadinessCheckServlet(readinessCheckers);
+            if (useServlets) {
+                HttpServlet hcs = new HealthCheckServlet(evaluator);
+                HttpServlet rcs = new ReadinessCheckServlet(evaluator);
 
-            ServletInfo hcServlet = Servlets.servlet("hcs", hcs.getClass(), new ImmediateInstanceFactory<HttpServlet>(hcs));
-            hcServlet.addMapping(healthCheckPath);
-            ServletInfo rcServlet = Servlets.servlet("rcs", rcs.getClass(), new ImmediateInstanceFactory<HttpServlet>(rcs));
-            rcServlet.addMapping(readinessCheckPath);
+                ServletInfo hcServlet = Servlets.servlet("hcs", hcs.getClass(), new ImmediateInstanceFactory<HttpServlet>(hcs));
+                hcServlet.addMapping(healthCheckPath);
+                ServletInfo rcServlet = Servlets.servlet("rcs", rcs.getClass(), new ImmediateInstanceFactory<HttpServlet>(rcs));
+                rcServlet.addMapping(readinessCheckPath);
 
-            DeploymentInfo deploymentInfo = Servlets.deployment()
-                    .setClassLoader(this.getClass().getClassLoader())
-                    .setContextPath("/")
-                    .setDeploymentName("")
-                    .setUrlEncoding("UTF-8")
-                    .addServlets(hcServlet, rcServlet);
+                DeploymentInfo deploymentInfo = Servlets.deployment()
+                        .setClassLoader(this.getClass().getClassLoader())
+                        .setContextPath("/")
+                        .setDeploymentName("")
+                        .setUrlEncoding("UTF-8")
+                        .addServlets(hcServlet, rcServlet);
+                if (metricsPath != null) {
+                    HttpServlet ms = new MetricsServlet(evaluator, metrics);
+                    ServletInfo mServlet = Servlets.servlet("ms", ms.getClass(), new ImmediateInstanceFactory<HttpServlet>(ms));
+                    mServlet.addMapping(metricsPath);
+                    deploymentInfo.addServlet(mServlet);
+                }
 
-            ServletContainer container = Servlets.newContainer();
-            DeploymentManager dm = container.addDeployment(deploymentInfo);
-            dm.deploy();
-            HttpHandler handler = dm.start();
+                ServletContainer container = Servlets.newContainer();
+                DeploymentManager dm = container.addDeployment(deploymentInfo);
+                dm.deploy();
+                HttpHandler handler = dm.start();
 
-            path.addPrefixPath("/", handler);
+                path.addPrefixPath("/", handler);
+            } else {
+                // no servlet container - cached check results are served directly from IO threads
+                path.addExactPath(healthCheckPath, new ChecksHandler(evaluator, ChecksResponse.Type.HEALTH));
+                path.addExactPath(readinessCheckPath, new ChecksHandler(evaluator, ChecksResponse.Type.READINESS));
+                if (metricsPath != null) {
+                    path.addExactPath(metricsPath, new MetricsHandler(evaluator, metrics));
+                }
+            }
 
             LOG.info("Starting health check service on port {} and {} URI", this.port, healthCheckPath);
             LOG.info("Starting readiness check service on port {} and {} URI", this.port, readinessCheckPath);
+            if (metricsPath != null) {
+                LOG.info("Starting metrics service on port {} and {} URI", this.port, metricsPath);
+            }
             server.start();
         }
     }
 
     @Deactivate
     void deactivate() {
+        evaluator.stop();
+        for (AbstractChecker checker : checkers) {
+            checker.close();
+        }
+        unregisterStatistics();
         if (port != -1) {
             // stop Undertow
             LOG.info("Stoping health and readiness check services on port {}", this.port);
@@ -187,7 +284,73 @@ public class ChecksService {
             LOG.info("Unregistering health and readiness check services from built-in server");
             httpService.unregister(healthCheckPath);
             httpService.unregister(readinessCheckPath);
+            if (metricsPath != null) {
+                httpService.unregister(metricsPath);
+            }
+        }
+    }
+
+    private void configureAggregation(Map<String, ?> configuration) {
+        AggregationPolicy.Mode mode = AggregationPolicy.Mode.STRICT;
+        Object value = configuration.get("aggregationPolicy");
+        if (value != null && !"".equals(value.toString().trim())) {
+            mode = AggregationPolicy.parse(AggregationPolicy.Mode.class, value);
+            if (mode == null) {
+                LOG.warn("Unknown aggregation policy {}, falling back to \"strict\"", value);
+                mode = AggregationPolicy.Mode.STRICT;
+            }
+        }
+        Map<String, Check.Severity> severities = new HashMap<>();
+        for (String key : configuration.keySet()) {
+            if (key.startsWith("severity.")) {
+                Check.Severity severity = AggregationPolicy.parse(Check.Severity.class, configuration.get(key));
+                if (severity == null) {
+                    LOG.warn("Can't parse {} as value of {} property", configuration.get(key), key);
+                } else {
+                    severities.put(key.substring("severity.".length()), severity);
+                }
+            }
+        }
+        evaluator.getAggregationPolicy().configure(mode, severities);
+    }
+
+    private void registerStatistics() {
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(ChecksStatisticsMXBean.OBJECT_NAME);
+            if (!mbs.isRegistered(name)) {
+                mbs.registerMBean(evaluator.getStatistics(), name);
+            }
+        } catch (Exception e) {
+            LOG.warn("Can't register {} MBean: {}", ChecksStatisticsMXBean.OBJECT_NAME, e.getMessage());
+        }
+    }
+
+    private void unregisterStatistics() {
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(ChecksStatisticsMXBean.OBJECT_NAME);
+            if (mbs.isRegistered(name)) {
+                mbs.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            LOG.warn("Can't unregister {} MBean: {}", ChecksStatisticsMXBean.OBJECT_NAME, e.getMessage());
+        }
+    }
+
+    private long getLong(Map<String, ?> configuration, String key, long defaultValue) {
+        Object value = configuration.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value != null && !"".equals(value.toString().trim())) {
+            try {
+                return Long.parseLong(value.toString().trim());
+            } catch (NumberFormatException e) {
+                LOG.warn("Can't parse {} as value of {} property", value, key);
+            }
         }
+        return defaultValue;
     }
 
     void bindHttpService(HttpService httpService) {
@@ -199,16 +362,20 @@ public class ChecksService {
 
     void bindReadinessCheckers(ReadinessChecker value) {
         readinessCheckers.add(value);
+        evaluator.requestEvaluation();
     }
     void unbindReadinessCheckers(ReadinessChecker value) {
         readinessCheckers.remove(value);
+        evaluator.requestEvaluation();
     }
 
     void bindHealthCheckers(HealthChecker value) {
         healthCheckers.add(value);
+        evaluator.requestEvaluation();
     }
     void unbindHealthCheckers(HealthChecker value) {
         healthCheckers.remove(value);
+        evaluator.requestEvaluation();
     }
 
 }
@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fabric8.karaf.checks.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.fabric8.karaf.checks.Check;
+
+/**
+ * Immutable result of a single evaluation of all registered health and readiness checkers.
+ */
+public final class ChecksSnapshot {
+
+    private final List<CheckerResult> healthResults;
+    private final List<CheckerResult> readinessResults;
+    private final List<Check> failingHealthChecks;
+    private final List<Check> failingReadinessChecks;
+    private final List<Check> healthWarnings;
+    private final List<Check> readinessWarnings;
+    private final boolean ready;
+    private final long timestamp;
+    private final long duration;
+
+    public ChecksSnapshot(List<CheckerResult> healthResults, List<CheckerResult> readinessResults, boolean ready,
+                          long timestamp, long duration, AggregationPolicy policy) {
+        this.healthResults = Collections.unmodifiableList(new ArrayList<>(healthResults));
+        this.readinessResults = Collections.unmodifiableList(new ArrayList<>(readinessResults));
+        this.failingHealthChecks = collect(healthResults, policy, true);
+        this.failingReadinessChecks = collect(readinessResults, policy, true);
+        this.healthWarnings = collect(healthResults, policy, false);
+        this.readinessWarnings = collect(readinessResults, policy, false);
+        this.ready = ready;
+        this.timestamp = timestamp;
+        this.duration = duration;
+    }
+
+    private static List<Check> collect(List<CheckerResult> results, AggregationPolicy policy, boolean failing) {
+        List<Check> checks = new ArrayList<>();
+        for (CheckerResult result : results) {
+            for (Check check : result.getChecks()) {
+                if (policy.isFailing(check) == failing) {
+                    checks.add(check);
+                }
+            }
+        }
+        return checks.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(checks);
+    }
+
+    public List<Check> getFailingHealthChecks() {
+        return failingHealthChecks;
+    }
+
+    public List<Check> getFailingReadinessChecks() {
+        return failingReadinessChecks;
+    }
+
+    /**
+     * Failing health checks which, according to {@link AggregationPolicy}, don't make the container unhealthy
+     */
+    public List<Check> getHealthWarnings() {
+        return healthWarnings;
+    }
+
+    /**
+     * Failing readiness checks which, according to {@link AggregationPolicy}, don't make the container not ready
+     */
+    public List<Check> getReadinessWarnings() {
+        return readinessWarnings;
+    }
+
+    public boolean isHealthy() {
+        return failingHealthChecks.isEmpty();
+    }
+
+    /**
+     * Readiness is decided by {@link ReadinessGate} - container may be ready even if some checks are failing
+     * and vice versa.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public List<CheckerResult> getHealthResults() {
+        return healthResults;
+    }
+
+    public List<CheckerResult> getReadinessResults() {
+        return readinessResults;
+    }
+
+    /**
+     * @return time (as returned by {@link System#currentTimeMillis()}) when this snapshot was computed
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return time (in milliseconds) it took to evaluate all the checkers
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public boolean isOlderThan(long maxAge, long now) {
+        return now - timestamp > maxAge;
+    }
+
+}
@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ChecksStatistics implements ChecksStatisticsMXBean {
+
+    private final Map<String, CheckerStatistics> checkers = new ConcurrentHashMap<>();
+    private final AtomicLong evaluations = new AtomicLong();
+    private volatile long lastEvaluationDuration;
+
+    public CheckerStatistics getCheckerStatistics(String checker) {
+        return checkers.computeIfAbsent(checker, k -> new CheckerStatistics());
+    }
+
+    void recordEvaluation(long duration) {
+        evaluations.incrementAndGet();
+        lastEvaluationDuration = duration;
+    }
+
+    @Override
+    public long getEvaluations() {
+        return evaluations.get();
+    }
+
+    @Override
+    public long getLastEvaluationDuration() {
+        return lastEvaluationDuration;
+    }
+
+    @Override
+    public long[] getHistogramBuckets() {
+        return CheckerStatistics.BUCKETS.clone();
+    }
+
+    @Override
+    public Map<String, CheckerStatistics> getCheckers() {
+        return new TreeMap<>(checkers);
+    }
+
+    @Override
+    public void reset() {
+        checkers.clear();
+        evaluations.set(0L);
+        lastEvaluationDuration = 0L;
+    }
+
+}
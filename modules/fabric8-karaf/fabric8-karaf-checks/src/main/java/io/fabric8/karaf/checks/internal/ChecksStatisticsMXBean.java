@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import java.util.Map;
+
+/**
+ * JMX view of cumulative statistics of health and readiness checkers.
+ */
+public interface ChecksStatisticsMXBean {
+
+    String OBJECT_NAME = "io.fabric8.karaf:type=checks";
+
+    /**
+     * @return number of evaluations of all the checkers
+     */
+    long getEvaluations();
+
+    /**
+     * @return duration (in milliseconds) of last evaluation of all the checkers
+     */
+    long getLastEvaluationDuration();
+
+    /**
+     * @return upper bounds (in milliseconds) of the buckets used in {@link CheckerStatistics#getHistogram()}
+     */
+    long[] getHistogramBuckets();
+
+    /**
+     * @return statistics of particular checkers, keyed by {@link ChecksEvaluator#getCheckerKey(Object) checker key}
+     */
+    Map<String, CheckerStatistics> getCheckers();
+
+    /**
+     * Resets all the statistics
+     */
+    void reset();
+
+}
@@ -36,36 +36,23 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
-import io.fabric8.karaf.checks.Check;
-import io.fabric8.karaf.checks.HealthChecker;
 public class HealthCheckServlet extends HttpServlet {
 
 
-    private final CopyOnWriteArrayList<HealthChecker> checkers;
+    private final ChecksEvaluator evaluator;
 
-    public HealthCheckServlet(CopyOnWriteArrayList<HealthChecker> checkers) {
-        this.checkers = checkers;
+    public HealthCheckServlet(ChecksEvaluator evaluator) {
+        this.evaluator = evaluator;
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        List<Check> checks = new ArrayList<>();
-        for (HealthChecker checker : checkers) {
-            checks.addAll(checker.getFailingHealthChecks());
-        }
-        if (checks.isEmpty()) {
-            resp.getWriter().println("HEALTHY");
-        } else {
-            resp.setStatus(503);
-            resp.getWriter().println("NOT HEALTHY");
-            for (Check check : checks) {
-                resp.getWriter().println(check.getName() + ": " + check.getLongDescription());
-            }
-        }
+        boolean json = ChecksJson.accepts(req.getHeader("Accept"));
+        ChecksResponse response = ChecksResponse.create(ChecksResponse.Type.HEALTH, evaluator.getSnapshot(), json);
+        resp.setStatus(response.getStatus());
+        resp.setContentType(response.getContentType());
+        resp.getWriter().print(response.getBody());
     }
 
 }
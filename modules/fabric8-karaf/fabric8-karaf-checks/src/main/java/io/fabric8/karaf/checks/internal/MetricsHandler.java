@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+
+/**
+ * Plain Undertow {@link HttpHandler} serving {@link PrometheusMetrics}. Like {@link ChecksHandler}, the request
+ * is dispatched to worker thread only when there's no cached {@link ChecksSnapshot}.
+ */
+public class MetricsHandler implements HttpHandler {
+
+    private final ChecksEvaluator evaluator;
+    private final PrometheusMetrics metrics;
+
+    public MetricsHandler(ChecksEvaluator evaluator, PrometheusMetrics metrics) {
+        this.evaluator = evaluator;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (!Methods.GET.equals(exchange.getRequestMethod()) && !Methods.HEAD.equals(exchange.getRequestMethod())) {
+            exchange.setStatusCode(405);
+            exchange.getResponseHeaders().put(Headers.ALLOW, "GET, HEAD");
+            exchange.endExchange();
+            return;
+        }
+        ChecksSnapshot snapshot = evaluator.getCachedSnapshot();
+        if (snapshot == null) {
+            if (exchange.isInIoThread()) {
+                exchange.dispatch(this);
+                return;
+            }
+            snapshot = evaluator.getSnapshot();
+        }
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, PrometheusMetrics.CONTENT_TYPE);
+        exchange.getResponseSender().send(metrics.render(snapshot));
+    }
+
+}
@@ -0,0 +1,206 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.ObjectName;
+
+import io.fabric8.karaf.checks.Check;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Renders container metrics in Prometheus text exposition format. Check related metrics come from the cached
+ * {@link ChecksSnapshot}, {@link ChecksStatistics} and {@link CamelState}, so scraping doesn't invoke any checker.
+ */
+public class PrometheusMetrics {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final ChecksEvaluator evaluator;
+    private final CamelState camelState;
+    private final BundleContext bundleContext;
+
+    public PrometheusMetrics(ChecksEvaluator evaluator, CamelState camelState, BundleContext bundleContext) {
+        this.evaluator = evaluator;
+        this.camelState = camelState;
+        this.bundleContext = bundleContext;
+    }
+
+    public String render(ChecksSnapshot snapshot) {
+        StringBuilder sb = new StringBuilder(4096);
+        renderBundles(sb);
+        renderChecks(sb, snapshot);
+        renderCamel(sb);
+        renderJvm(sb);
+        return sb.toString();
+    }
+
+    private void renderBundles(StringBuilder sb) {
+        int[] counts = new int[6];
+        for (Bundle bundle : bundleContext.getBundles()) {
+            switch (bundle.getState()) {
+                case Bundle.INSTALLED: counts[0]++; break;
+                case Bundle.RESOLVED: counts[1]++; break;
+                case Bundle.STARTING: counts[2]++; break;
+                case Bundle.ACTIVE: counts[3]++; break;
+                case Bundle.STOPPING: counts[4]++; break;
+                default: counts[5]++; break;
+            }
+        }
+        header(sb, "karaf_bundles", "gauge", "Number of bundles per state");
+        String[] states = new String[] { "installed", "resolved", "starting", "active", "stopping", "uninstalled" };
+        for (int i = 0; i < states.length; i++) {
+            sample(sb, "karaf_bundles", "state", states[i], counts[i]);
+        }
+    }
+
+    private void renderChecks(StringBuilder sb, ChecksSnapshot snapshot) {
+        header(sb, "karaf_health_status", "gauge", "1 if the container is healthy, 0 otherwise");
+        sb.append("karaf_health_status ").append(snapshot.isHealthy() ? 1 : 0).append('\n');
+        header(sb, "karaf_readiness_status", "gauge", "1 if the container is ready, 0 otherwise");
+        sb.append("karaf_readiness_status ").append(snapshot.isReady() ? 1 : 0).append('\n');
+        header(sb, "karaf_checks_timestamp_seconds", "gauge", "Time of last evaluation of the checks");
+        sb.append("karaf_checks_timestamp_seconds ").append(seconds(snapshot.getTimestamp())).append('\n');
+
+        header(sb, "karaf_checks_failing", "gauge", "Number of failing checks per checker and severity");
+        failing(sb, snapshot.getHealthResults(), "health");
+        failing(sb, snapshot.getReadinessResults(), "readiness");
+
+        Map<String, CheckerStatistics> checkers = evaluator.getStatistics().getCheckers();
+        header(sb, "karaf_check_duration_seconds", "histogram", "Duration of checker evaluations");
+        for (Map.Entry<String, CheckerStatistics> e : checkers.entrySet()) {
+            String checker = escape(e.getKey());
+            long[] histogram = e.getValue().getHistogram();
+            long cumulative = 0L;
+            for (int i = 0; i < histogram.length; i++) {
+                cumulative += histogram[i];
+                String le = i < CheckerStatistics.BUCKETS.length ? seconds(CheckerStatistics.BUCKETS[i]) : "+Inf";
+                sb.append("karaf_check_duration_seconds_bucket{checker=\"").append(checker)
+                        .append("\",le=\"").append(le).append("\"} ").append(cumulative).append('\n');
+            }
+            sb.append("karaf_check_duration_seconds_sum{checker=\"").append(checker).append("\"} ")
+                    .append(seconds(e.getValue().getTotalDuration())).append('\n');
+            sb.append("karaf_check_duration_seconds_count{checker=\"").append(checker).append("\"} ")
+                    .append(e.getValue().getInvocations()).append('\n');
+        }
+        header(sb, "karaf_check_timeouts_total", "counter", "Number of checker invocations that timed out");
+        for (Map.Entry<String, CheckerStatistics> e : checkers.entrySet()) {
+            sample(sb, "karaf_check_timeouts_total", "checker", e.getKey(), e.getValue().getTimeouts());
+        }
+        header(sb, "karaf_check_errors_total", "counter", "Number of checker invocations that failed");
+        for (Map.Entry<String, CheckerStatistics> e : checkers.entrySet()) {
+            sample(sb, "karaf_check_errors_total", "checker", e.getKey(), e.getValue().getErrors());
+        }
+    }
+
+    private static void failing(StringBuilder sb, List<CheckerResult> results, String type) {
+        for (CheckerResult result : results) {
+            int warnings = 0;
+            for (Check check : result.getChecks()) {
+                if (check.getSeverity() == Check.Severity.WARNING) {
+                    warnings++;
+                }
+            }
+            String checker = escape(result.getChecker());
+            sb.append("karaf_checks_failing{checker=\"").append(checker).append("\",type=\"").append(type)
+                    .append("\",severity=\"critical\"} ").append(result.getChecks().size() - warnings).append('\n');
+            sb.append("karaf_checks_failing{checker=\"").append(checker).append("\",type=\"").append(type)
+                    .append("\",severity=\"warning\"} ").append(warnings).append('\n');
+        }
+    }
+
+    private void renderCamel(StringBuilder sb) {
+        Map<ObjectName, String> contexts = new TreeMap<>(camelState.getContextStates());
+        header(sb, "karaf_camel_context_started", "gauge", "1 if Camel context is started, 0 otherwise");
+        for (Map.Entry<ObjectName, String> e : contexts.entrySet()) {
+            // context names don't have to be unique - the management name identifies the context
+            sb.append("karaf_camel_context_started{context=\"")
+                    .append(escape(CamelState.getKeyProperty(e.getKey(), "context")))
+                    .append("\",name=\"").append(escape(CamelState.getKeyProperty(e.getKey(), "name")))
+                    .append("\"} ").append("Started".equals(e.getValue()) ? 1 : 0).append('\n');
+        }
+    }
+
+    private void renderJvm(StringBuilder sb) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        MemoryUsage nonHeap = memory.getNonHeapMemoryUsage();
+        header(sb, "jvm_memory_bytes_used", "gauge", "Used bytes of a given JVM memory area");
+        sample(sb, "jvm_memory_bytes_used", "area", "heap", heap.getUsed());
+        sample(sb, "jvm_memory_bytes_used", "area", "nonheap", nonHeap.getUsed());
+        header(sb, "jvm_memory_bytes_committed", "gauge", "Committed bytes of a given JVM memory area");
+        sample(sb, "jvm_memory_bytes_committed", "area", "heap", heap.getCommitted());
+        sample(sb, "jvm_memory_bytes_committed", "area", "nonheap", nonHeap.getCommitted());
+        header(sb, "jvm_memory_bytes_max", "gauge", "Max bytes of a given JVM memory area");
+        sample(sb, "jvm_memory_bytes_max", "area", "heap", heap.getMax());
+        sample(sb, "jvm_memory_bytes_max", "area", "nonheap", nonHeap.getMax());
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        header(sb, "jvm_threads_current", "gauge", "Current thread count of the JVM");
+        sb.append("jvm_threads_current ").append(threads.getThreadCount()).append('\n');
+        header(sb, "jvm_threads_daemon", "gauge", "Daemon thread count of the JVM");
+        sb.append("jvm_threads_daemon ").append(threads.getDaemonThreadCount()).append('\n');
+
+        ClassLoadingMXBean classes = ManagementFactory.getClassLoadingMXBean();
+        header(sb, "jvm_classes_loaded", "gauge", "Number of classes currently loaded in the JVM");
+        sb.append("jvm_classes_loaded ").append(classes.getLoadedClassCount()).append('\n');
+
+        header(sb, "jvm_gc_collection_seconds", "summary", "Time spent in a given JVM garbage collector");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String name = escape(gc.getName());
+            sb.append("jvm_gc_collection_seconds_count{gc=\"").append(name).append("\"} ")
+                    .append(gc.getCollectionCount()).append('\n');
+            sb.append("jvm_gc_collection_seconds_sum{gc=\"").append(name).append("\"} ")
+                    .append(seconds(gc.getCollectionTime())).append('\n');
+        }
+
+        header(sb, "process_uptime_seconds", "gauge", "Uptime of the JVM");
+        sb.append("process_uptime_seconds ").append(seconds(ManagementFactory.getRuntimeMXBean().getUptime())).append('\n');
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String label, String labelValue, long value) {
+        sb.append(name).append('{').append(label).append("=\"").append(escape(labelValue)).append("\"} ")
+                .append(value).append('\n');
+    }
+
+    private static String seconds(long millis) {
+        return Double.toString(millis / 1000.0d);
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+}
@@ -36,36 +36,22 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
-
-import io.fabric8.karaf.checks.Check;
-import io.fabric8.karaf.checks.ReadinessChecker;
 
 public class ReadinessCheckServlet extends HttpServlet {
 
-    private final CopyOnWriteArrayList<ReadinessChecker> checkers;
+    private final ChecksEvaluator evaluator;
 
-    public ReadinessCheckServlet(CopyOnWriteArrayList<ReadinessChecker> readinessCheckers) {
-        this.checkers = readinessCheckers;
+    public ReadinessCheckServlet(ChecksEvaluator evaluator) {
+        this.evaluator = evaluator;
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        List<Check> checks = new ArrayList<>();
-        for (ReadinessChecker checker : checkers) {
-            checks.addAll(checker.getFailingReadinessChecks());
-        }
-        if (checks.isEmpty()) {
-            resp.getWriter().println("READY");
-        } else {
-            resp.setStatus(503);
-            resp.getWriter().println("NOT READY");
-            for (Check check : checks) {
-                resp.getWriter().println(check.getName() + ": " + check.getLongDescription());
-            }
-        }
+        boolean json = ChecksJson.accepts(req.getHeader("Accept"));
+        ChecksResponse response = ChecksResponse.create(ChecksResponse.Type.READINESS, evaluator.getSnapshot(), json);
+        resp.setStatus(response.getStatus());
+        resp.setContentType(response.getContentType());
+        resp.getWriter().print(response.getBody());
     }
 
 }
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import java.util.Collections;
+import java.util.List;
+
+import io.fabric8.karaf.checks.Check;
+
+/**
+ * Decides whether the container is ready, based on consecutive results of readiness checkers instead of
+ * the last result only:<ul>
+ *     <li>ready container becomes not ready after {@code failureThreshold} consecutive failing evaluations</li>
+ *     <li>not ready container becomes ready after {@code successThreshold} consecutive successful evaluations</li>
+ *     <li>container is never ready before boot features are installed and {@code startupGracePeriod}
+ *     milliseconds have passed since then</li>
+ * </ul>
+ * With default configuration (thresholds set to 1, no grace period) readiness reflects the last evaluation.
+ * <p/>
+ * Thresholds count only evaluations marked as counted (the periodic ones), so additional evaluations triggered
+ * by OSGi events or probes don't make the transitions faster. Other evaluations report the current state.
+ */
+public class ReadinessGate {
+
+    public static final String NAME = "ReadinessGate";
+    public static final String CHECK_NAME = "readiness-gate";
+
+    private final AggregationPolicy policy;
+
+    private int failureThreshold = 1;
+    private int successThreshold = 1;
+    private long startupGracePeriod = 0L;
+
+    private boolean ready;
+    private int failures;
+    private int successes;
+    private long bootFinishedAt = -1L;
+
+    public ReadinessGate(AggregationPolicy policy) {
+        this.policy = policy;
+    }
+
+    public synchronized void configure(int failureThreshold, int successThreshold, long startupGracePeriod) {
+        this.failureThreshold = Math.max(failureThreshold, 1);
+        this.successThreshold = Math.max(successThreshold, 1);
+        this.startupGracePeriod = Math.max(startupGracePeriod, 0L);
+    }
+
+    /**
+     * Updates the readiness state using results of single evaluation of readiness checkers. Only checks considered
+     * failing by {@link AggregationPolicy} count, but the container is never ready until boot features are
+     * installed, regardless of configured severities. If the container
+     * is not ready even if no checker failed, additional result explaining the reason is added to the results.
+     * @param results results of all readiness checkers
+     * @param now time of the evaluation
+     * @param counted whether the evaluation counts towards the thresholds
+     * @return whether the container is ready
+     */
+    public synchronized boolean apply(List<CheckerResult> results, long now, boolean counted) {
+        boolean failing = false;
+        boolean booted = true;
+        for (CheckerResult result : results) {
+            if (BootFeaturesState.class.getSimpleName().equals(result.getChecker()) && !result.getChecks().isEmpty()) {
+                booted = false;
+            }
+            if (policy.isFailing(result)) {
+                failing = true;
+            }
+        }
+
+        if (!booted) {
+            ready = false;
+            failures = 0;
+            successes = 0;
+            return false;
+        }
+        if (bootFinishedAt < 0L) {
+            bootFinishedAt = now;
+        }
+        if (!ready && now - bootFinishedAt < startupGracePeriod) {
+            successes = 0;
+            long remaining = startupGracePeriod - (now - bootFinishedAt);
+            results.add(gateResult("Startup grace period ends in " + remaining + "ms"));
+            return false;
+        }
+
+        if (!counted && (failureThreshold > 1 || successThreshold > 1)) {
+            // with thresholds of 1, counting is idempotent and the gate may follow every evaluation
+            if (!ready && !failing) {
+                results.add(gateResult("Waiting for " + (successThreshold - successes) + " more successful evaluation(s)"));
+            }
+            return ready;
+        }
+
+        if (failing) {
+            successes = 0;
+            if (ready && ++failures >= failureThreshold) {
+                ready = false;
+            }
+        } else {
+            failures = 0;
+            if (!ready && ++successes >= successThreshold) {
+                ready = true;
+            }
+        }
+        if (!ready && !failing) {
+            results.add(gateResult("Waiting for " + (successThreshold - successes) + " more successful evaluation(s)"));
+        }
+        return ready;
+    }
+
+    private CheckerResult gateResult(String description) {
+        return new CheckerResult(NAME, Collections.singletonList(new Check(CHECK_NAME, description)), 0L);
+    }
+
+}
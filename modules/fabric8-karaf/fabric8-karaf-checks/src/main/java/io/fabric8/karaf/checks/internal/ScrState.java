@@ -1,22 +1,78 @@
 package io.fabric8.karaf.checks.internal;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.fabric8.karaf.checks.Check;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.component.ComponentConstants;
 import org.osgi.service.component.runtime.ServiceComponentRuntime;
 import org.osgi.service.component.runtime.dto.ComponentConfigurationDTO;
 import org.osgi.service.component.runtime.dto.ComponentDescriptionDTO;
 import org.osgi.util.tracker.ServiceTracker;
 
-public class ScrState extends AbstractBundleChecker {
+/**
+ * Checks states of SCR components. Instead of querying {@link ServiceComponentRuntime} for every bundle on every
+ * check, failing component states are kept in an index keyed by bundle ID. The index is rebuilt (with single pass
+ * over all component descriptions) only when SCR reports a change - either by updating
+ * {@code service.changecount} property of {@link ServiceComponentRuntime} service or by (un)registering
+ * a component service - or after a bundle event.
+ */
+public class ScrState extends AbstractBundleChecker implements ServiceListener {
 
     private final ServiceTracker<ServiceComponentRuntime, ServiceComponentRuntime> tracker;
 
+    private final Map<Long, Check> index = new ConcurrentHashMap<>();
+    private final AtomicBoolean indexDirty = new AtomicBoolean(true);
+    private volatile long indexedChangeCount = -1L;
+    private volatile boolean scrAvailable;
+
     public ScrState() {
         super();
         tracker = new ServiceTracker<>(bundleContext, ServiceComponentRuntime.class, null);
         tracker.open();
+        try {
+            bundleContext.addServiceListener(this, "(|(" + Constants.OBJECTCLASS + "=" + ServiceComponentRuntime.class.getName() + ")"
+                    + "(" + ComponentConstants.COMPONENT_NAME + "=*))");
+        } catch (InvalidSyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void serviceChanged(ServiceEvent event) {
+        indexDirty.set(true);
+    }
+
+    @Override
+    public void bundleChanged(BundleEvent event) {
+        indexDirty.set(true);
+        super.bundleChanged(event);
+    }
+
+    @Override
+    protected List<Check> doCheck() {
+        refreshIndex();
+        return super.doCheck();
+    }
+
+    @Override
+    public void close() {
+        bundleContext.removeServiceListener(this);
+        tracker.close();
+        super.close();
     }
 
     @Override
@@ -24,23 +80,80 @@ public class ScrState extends AbstractBundleChecker {
         if (bundle.getHeaders().get("Service-Component") == null) {
             return null;
         }
-        ServiceComponentRuntime svc = tracker.getService();
-        if (svc == null) {
+        if (tracker.getService() == null) {
             return new Check("scr-state", "No ScrService found");
         }
-        Collection<ComponentDescriptionDTO> components = svc.getComponentDescriptionDTOs(bundle);
+        return index.get(bundle.getBundleId());
+    }
+
+    /**
+     * Rebuilds the index of failing bundles if SCR state has changed since last time
+     */
+    private void refreshIndex() {
+        ServiceReference<ServiceComponentRuntime> ref = tracker.getServiceReference();
+        ServiceComponentRuntime svc = tracker.getService();
+        if (ref == null || svc == null) {
+            if (scrAvailable) {
+                // bundles with components are now reported as missing SCR
+                scrAvailable = false;
+                index.clear();
+                indexedChangeCount = -1L;
+                invalidate();
+            }
+            return;
+        }
+        Object cc = ref.getProperty(Constants.SERVICE_CHANGECOUNT);
+        long changeCount = cc instanceof Number ? ((Number) cc).longValue() : -1L;
+        if (!indexDirty.getAndSet(false) && changeCount >= 0L && changeCount == indexedChangeCount) {
+            return;
+        }
+
+        Map<Long, Check> failing = new HashMap<>();
+        Collection<ComponentDescriptionDTO> components = svc.getComponentDescriptionDTOs();
         if (components != null) {
             for (ComponentDescriptionDTO component : components) {
-                Collection<ComponentConfigurationDTO> dtos = svc.getComponentConfigurationDTOs(component);
-                for (ComponentConfigurationDTO dto : dtos) {
+                long bundleId = component.bundle.id;
+                if (failing.containsKey(bundleId)) {
+                    continue;
+                }
+                for (ComponentConfigurationDTO dto : svc.getComponentConfigurationDTOs(component)) {
                     int state = dto.state;
                     if (state != ComponentConfigurationDTO.ACTIVE && state != ComponentConfigurationDTO.SATISFIED) {
-                        return new Check("scr-state", "SCR bundle " + bundle.getBundleId() + " is in state " + getState(state));
+                        failing.put(bundleId, new Check("scr-state", "SCR bundle " + bundleId + " is in state " + getState(state)));
+                        break;
                     }
                 }
             }
         }
-        return null;
+        Set<Long> changed = new HashSet<>();
+        for (Map.Entry<Long, Check> e : index.entrySet()) {
+            Check check = failing.get(e.getKey());
+            if (check == null || !check.getLongDescription().equals(e.getValue().getLongDescription())) {
+                changed.add(e.getKey());
+            }
+        }
+        for (Long bundleId : failing.keySet()) {
+            if (!index.containsKey(bundleId)) {
+                changed.add(bundleId);
+            }
+        }
+        index.keySet().retainAll(failing.keySet());
+        index.putAll(failing);
+        indexedChangeCount = changeCount;
+
+        if (!scrAvailable) {
+            // bundles with components may have been reported as missing SCR
+            scrAvailable = true;
+            invalidate();
+        } else {
+            // re-evaluate only the bundles whose entry has changed
+            for (Long bundleId : changed) {
+                Bundle bundle = systemBundleContext.getBundle(bundleId);
+                if (bundle != null) {
+                    update(bundle);
+                }
+            }
+        }
     }
 
     private String getState(int state) {
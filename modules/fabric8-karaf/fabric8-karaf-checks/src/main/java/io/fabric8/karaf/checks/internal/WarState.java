@@ -24,19 +24,28 @@ import io.fabric8.karaf.checks.Check;
 import org.ops4j.pax.web.service.spi.model.events.WebApplicationEvent;
 import org.ops4j.pax.web.service.spi.model.events.WebApplicationEventListener;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceRegistration;
 
 public class WarState extends AbstractBundleChecker
                             implements WebApplicationEventListener {
 
     private final Map<Long, WebApplicationEvent> states = new ConcurrentHashMap<>();
+    private final ServiceRegistration<WebApplicationEventListener> registration;
 
     public WarState() {
-        bundleContext.registerService(WebApplicationEventListener.class, this, null);
+        registration = bundleContext.registerService(WebApplicationEventListener.class, this, null);
+    }
+
+    @Override
+    public void close() {
+        registration.unregister();
+        super.close();
     }
 
     @Override
     public void webEvent(WebApplicationEvent event) {
         states.put(event.getBundle().getBundleId(), event);
+        update(event.getBundle());
     }
 
     @Override
@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.fabric8.karaf.checks.Check;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AggregationPolicyTest {
+
+    @Test
+    public void testStrictModeFailsOnWarnings() {
+        AggregationPolicy policy = new AggregationPolicy();
+        Assert.assertEquals(AggregationPolicy.Mode.STRICT, policy.getMode());
+
+        CheckerResult result = policy.apply(result("CamelState", warning("camel-state")));
+
+        Assert.assertTrue(policy.isFailing(result));
+        Assert.assertFalse(policy.isFailing(policy.apply(result("CamelState"))));
+    }
+
+    @Test
+    public void testCriticalModeIgnoresWarnings() {
+        AggregationPolicy policy = new AggregationPolicy();
+        policy.configure(AggregationPolicy.Mode.CRITICAL, Collections.emptyMap());
+
+        Assert.assertFalse(policy.isFailing(policy.apply(result("CamelState", warning("camel-state")))));
+        Assert.assertTrue(policy.isFailing(policy.apply(result("CamelState", warning("camel-state"),
+                new Check("camel-state", "Camel context is stopped")))));
+    }
+
+    @Test
+    public void testDefaultSeverityAndGroup() {
+        AggregationPolicy policy = new AggregationPolicy();
+        Check check = new Check("bundle-state", "Bundle 42 is not active");
+        check.setSeverity(null);
+
+        Check applied = policy.apply(result("BundleState", check)).getChecks().get(0);
+
+        Assert.assertEquals(Check.Severity.CRITICAL, applied.getSeverity());
+        Assert.assertEquals("BundleState", applied.getGroup());
+        Assert.assertEquals("bundle-state", applied.getName());
+        Assert.assertEquals("Bundle 42 is not active", applied.getLongDescription());
+        // checks returned by the checker are not modified
+        Assert.assertNull(check.getSeverity());
+        Assert.assertNull(check.getGroup());
+    }
+
+    @Test
+    public void testCheckerSeverityOverride() {
+        AggregationPolicy policy = new AggregationPolicy();
+        Map<String, Check.Severity> severities = new HashMap<>();
+        severities.put("WarState", Check.Severity.WARNING);
+        policy.configure(AggregationPolicy.Mode.CRITICAL, severities);
+
+        CheckerResult war = policy.apply(result("WarState", new Check("war-state", "War bundle 42 is in state FAILED")));
+        CheckerResult bundle = policy.apply(result("BundleState", new Check("bundle-state", "Bundle 42 is not active")));
+
+        Assert.assertEquals(Check.Severity.WARNING, war.getChecks().get(0).getSeverity());
+        Assert.assertFalse(policy.isFailing(war));
+        Assert.assertTrue(policy.isFailing(bundle));
+    }
+
+    @Test
+    public void testGroupSeverityOverride() {
+        AggregationPolicy policy = new AggregationPolicy();
+        Map<String, Check.Severity> severities = new HashMap<>();
+        severities.put("optional", Check.Severity.WARNING);
+        severities.put("CamelState", Check.Severity.CRITICAL);
+        severities.put("ScrState", Check.Severity.WARNING);
+        policy.configure(AggregationPolicy.Mode.CRITICAL, severities);
+
+        // group takes precedence over checker
+        CheckerResult camel = policy.apply(result("CamelState",
+                new Check("camel-state", "Camel context optional is stopped").group("optional"),
+                new Check("camel-state", "Camel context required is stopped").group("required")));
+        Assert.assertEquals(Check.Severity.WARNING, camel.getChecks().get(0).getSeverity());
+        Assert.assertEquals(Check.Severity.CRITICAL, camel.getChecks().get(1).getSeverity());
+        Assert.assertTrue(policy.isFailing(camel));
+
+        // group override may also make declared warning critical
+        severities.put("optional", Check.Severity.CRITICAL);
+        policy.configure(AggregationPolicy.Mode.CRITICAL, severities);
+        CheckerResult scr = policy.apply(result("ScrState", warning("scr-state").group("optional")));
+        Assert.assertEquals(Check.Severity.CRITICAL, scr.getChecks().get(0).getSeverity());
+        Assert.assertTrue(policy.isFailing(scr));
+    }
+
+    @Test
+    public void testParse() {
+        Assert.assertEquals(AggregationPolicy.Mode.CRITICAL, AggregationPolicy.parse(AggregationPolicy.Mode.class, " critical "));
+        Assert.assertEquals(Check.Severity.WARNING, AggregationPolicy.parse(Check.Severity.class, "Warning"));
+        Assert.assertNull(AggregationPolicy.parse(AggregationPolicy.Mode.class, "lenient"));
+        Assert.assertNull(AggregationPolicy.parse(AggregationPolicy.Mode.class, null));
+    }
+
+    private static Check warning(String name) {
+        return new Check(name, name + " warning").severity(Check.Severity.WARNING);
+    }
+
+    private static CheckerResult result(String checker, Check... checks) {
+        return new CheckerResult(checker, Arrays.asList(checks), 0L);
+    }
+
+}
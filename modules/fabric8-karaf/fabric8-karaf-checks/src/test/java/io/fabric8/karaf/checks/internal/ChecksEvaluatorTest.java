@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.fabric8.karaf.checks.Check;
+import io.fabric8.karaf.checks.HealthChecker;
+import io.fabric8.karaf.checks.ReadinessChecker;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChecksEvaluatorTest {
+
+    @Test
+    public void testConcurrentCallersShareEvaluation() throws Exception {
+        SlowChecker checker = new SlowChecker();
+        CopyOnWriteArrayList<HealthChecker> health = new CopyOnWriteArrayList<>();
+        health.add(checker);
+        ChecksEvaluator evaluator = new ChecksEvaluator(health, new CopyOnWriteArrayList<ReadinessChecker>());
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ChecksSnapshot>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(evaluator::getSnapshot));
+            }
+            Assert.assertTrue(checker.started.await(5, TimeUnit.SECONDS));
+            // let the other callers reach the evaluation in progress
+            Thread.sleep(200L);
+            checker.release.countDown();
+
+            ChecksSnapshot first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<ChecksSnapshot> result : results) {
+                Assert.assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+            Assert.assertEquals(1, checker.invocations.get());
+
+            // evaluation finished - next call evaluates the checkers again
+            Assert.assertNotSame(first, evaluator.getSnapshot());
+            Assert.assertEquals(2, checker.invocations.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCheckersWithSameClassHaveSeparateKeys() {
+        HealthChecker first = new SlowChecker();
+        HealthChecker second = new SlowChecker();
+        HealthChecker lambda = Collections::emptyList;
+        CopyOnWriteArrayList<HealthChecker> health = new CopyOnWriteArrayList<>();
+        health.add(first);
+        health.add(second);
+        health.add(lambda);
+        ChecksEvaluator evaluator = new ChecksEvaluator(health, new CopyOnWriteArrayList<ReadinessChecker>());
+        ((SlowChecker) first).release.countDown();
+        ((SlowChecker) second).release.countDown();
+
+        Assert.assertEquals(SlowChecker.class.getName(), evaluator.getCheckerKey(first));
+        Assert.assertEquals(SlowChecker.class.getName() + "#2", evaluator.getCheckerKey(second));
+        Assert.assertEquals(SlowChecker.class.getName(), evaluator.getCheckerKey(first));
+        Assert.assertEquals("SlowChecker", ChecksEvaluator.getCheckerName(second));
+        Assert.assertEquals(lambda.getClass().getName(), ChecksEvaluator.getCheckerName(lambda));
+
+        evaluator.getSnapshot();
+        Assert.assertEquals(3, evaluator.getStatistics().getCheckers().size());
+    }
+
+    private static final class SlowChecker implements HealthChecker {
+        private final AtomicInteger invocations = new AtomicInteger();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public List<Check> getFailingHealthChecks() {
+            invocations.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Collections.emptyList();
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.fabric8.karaf.checks.Check;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReadinessGateTest {
+
+    @Test
+    public void testDefaultsFollowLastEvaluation() {
+        ReadinessGate gate = new ReadinessGate(new AggregationPolicy());
+
+        Assert.assertTrue(gate.apply(passing(), 0L, true));
+        Assert.assertFalse(gate.apply(failing(), 1L, false));
+        Assert.assertTrue(gate.apply(passing(), 2L, false));
+    }
+
+    @Test
+    public void testThresholds() {
+        ReadinessGate gate = new ReadinessGate(new AggregationPolicy());
+        gate.configure(2, 3, 0L);
+
+        Assert.assertFalse(gate.apply(passing(), 0L, true));
+        Assert.assertFalse(gate.apply(passing(), 1L, true));
+        Assert.assertTrue(gate.apply(passing(), 2L, true));
+
+        Assert.assertTrue(gate.apply(failing(), 3L, true));
+        Assert.assertTrue(gate.apply(passing(), 4L, true));
+        Assert.assertTrue(gate.apply(failing(), 5L, true));
+        Assert.assertFalse(gate.apply(failing(), 6L, true));
+    }
+
+    @Test
+    public void testUncountedEvaluationsDontMoveThresholds() {
+        ReadinessGate gate = new ReadinessGate(new AggregationPolicy());
+        gate.configure(2, 2, 0L);
+
+        Assert.assertFalse(gate.apply(passing(), 0L, true));
+        for (int i = 0; i < 10; i++) {
+            List<CheckerResult> results = passing();
+            Assert.assertFalse(gate.apply(results, 1L, false));
+            Assert.assertEquals(ReadinessGate.NAME, results.get(results.size() - 1).getChecker());
+        }
+        Assert.assertTrue(gate.apply(passing(), 2L, true));
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(gate.apply(failing(), 3L, false));
+        }
+        Assert.assertTrue(gate.apply(failing(), 4L, true));
+        Assert.assertFalse(gate.apply(failing(), 5L, true));
+    }
+
+    @Test
+    public void testStartupGracePeriod() {
+        ReadinessGate gate = new ReadinessGate(new AggregationPolicy());
+        gate.configure(1, 1, 1000L);
+
+        List<CheckerResult> results = booting();
+        Assert.assertFalse(gate.apply(results, 0L, true));
+        Assert.assertEquals(1, results.size());
+
+        results = passing();
+        Assert.assertFalse(gate.apply(results, 100L, true));
+        Assert.assertEquals("Startup grace period ends in 1000ms", results.get(1).getChecks().get(0).getLongDescription());
+        Assert.assertFalse(gate.apply(passing(), 1099L, false));
+        Assert.assertTrue(gate.apply(passing(), 1100L, true));
+    }
+
+    @Test
+    public void testBootFeaturesMakeNotReadyImmediately() {
+        ReadinessGate gate = new ReadinessGate(new AggregationPolicy());
+        gate.configure(3, 1, 0L);
+
+        Assert.assertTrue(gate.apply(passing(), 0L, true));
+        Assert.assertFalse(gate.apply(booting(), 1L, false));
+        Assert.assertTrue(gate.apply(passing(), 2L, true));
+    }
+
+    @Test
+    public void testWarningsIgnoredInCriticalMode() {
+        AggregationPolicy policy = new AggregationPolicy();
+        policy.configure(AggregationPolicy.Mode.CRITICAL, Collections.emptyMap());
+        ReadinessGate gate = new ReadinessGate(policy);
+
+        Check warning = new Check("camel-state", "Camel context is suspended").severity(Check.Severity.WARNING);
+        Assert.assertTrue(gate.apply(results(new CheckerResult("CamelState", Collections.singletonList(warning), 0L)), 0L, true));
+        Assert.assertFalse(gate.apply(failing(), 1L, true));
+    }
+
+    private static List<CheckerResult> passing() {
+        return results(new CheckerResult("BundleState", Collections.emptyList(), 0L));
+    }
+
+    private static List<CheckerResult> failing() {
+        return results(new CheckerResult("BundleState", Collections.singletonList(new Check("bundle-state", "Bundle 42 is not active")), 0L));
+    }
+
+    private static List<CheckerResult> booting() {
+        return results(new CheckerResult(BootFeaturesState.class.getSimpleName(),
+                Collections.singletonList(new Check("boot-features", "Boot features are being installed")), 0L));
+    }
+
+    private static List<CheckerResult> results(CheckerResult result) {
+        List<CheckerResult> results = new ArrayList<>();
+        results.add(result);
+        return results;
+    }
+
+}
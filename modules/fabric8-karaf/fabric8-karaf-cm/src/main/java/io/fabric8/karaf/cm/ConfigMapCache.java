@@ -0,0 +1,100 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.cm;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Last seen state of the bridged ConfigMaps, shared by the reflectors of all the namespaces and label shards.
+ * As the shards may overlap, each entry remembers the scopes (reflectors) it has been seen by, and it's removed
+ * only when no scope sees it anymore.
+ */
+final class ConfigMapCache {
+    // namespace/name -> entry
+    private final Map<String, Cached> entries;
+
+    ConfigMapCache() {
+        this.entries = new HashMap<>();
+    }
+
+    synchronized ConfigMapEntry get(String key) {
+        Cached cached = entries.get(key);
+        return cached != null ? cached.entry : null;
+    }
+
+    /**
+     * Stores the entry as seen by given scope
+     *
+     * @return the entry previously seen by any scope, or <tt>null</tt>
+     */
+    synchronized ConfigMapEntry put(String scope, ConfigMapEntry entry) {
+        Cached cached = entries.get(entry.getKey());
+        if (cached == null) {
+            cached = new Cached();
+            entries.put(entry.getKey(), cached);
+        }
+
+        ConfigMapEntry previous = cached.entry;
+        if (previous == null || !entry.isOlderThan(previous)) {
+            cached.entry = entry;
+        }
+        cached.scopes.add(scope);
+        return previous;
+    }
+
+    /**
+     * Removes the entry from given scope
+     *
+     * @return the removed entry, if it isn't seen by any other scope, otherwise <tt>null</tt>
+     */
+    synchronized ConfigMapEntry remove(String scope, String key) {
+        Cached cached = entries.get(key);
+        if (cached == null || !cached.scopes.remove(scope) || !cached.scopes.isEmpty()) {
+            return null;
+        }
+        entries.remove(key);
+        return cached.entry;
+    }
+
+    /**
+     * @return keys of the entries seen by given scope
+     */
+    synchronized Set<String> keys(String scope) {
+        Set<String> keys = new HashSet<>();
+        for (Map.Entry<String, Cached> entry : entries.entrySet()) {
+            if (entry.getValue().scopes.contains(scope)) {
+                keys.add(entry.getKey());
+            }
+        }
+        return keys;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    private static final class Cached {
+        private final Set<String> scopes = new HashSet<>(2);
+        private ConfigMapEntry entry;
+    }
+}
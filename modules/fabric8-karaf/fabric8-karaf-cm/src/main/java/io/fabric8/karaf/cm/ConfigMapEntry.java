@@ -0,0 +1,254 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.cm;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.client.utils.Utils;
+
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_MERGE;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_META;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_PID_CFG;
+
+/**
+ * The part of a ConfigMap the bridge needs, with the configuration already parsed, so the ConfigMaps themselves
+ * (which may carry large payloads the bridge doesn't use) don't have to be kept.
+ */
+final class ConfigMapEntry {
+    private final String namespace;
+    private final String name;
+    private final String resourceVersion;
+    private final Map<String, String> labels;
+    private final String pid;
+    private final String contentHash;
+    private final Map<String, Object> properties;
+    private final Boolean merge;
+    private final Boolean meta;
+
+    private ConfigMapEntry(ObjectMeta metadata, String pid, String contentHash, Map<String, Object> properties,
+                           Boolean merge, Boolean meta) {
+        this.namespace = metadata.getNamespace();
+        this.name = metadata.getName();
+        this.resourceVersion = metadata.getResourceVersion();
+        this.labels = metadata.getLabels() != null
+            ? Collections.unmodifiableMap(new HashMap<>(metadata.getLabels()))
+            : Collections.emptyMap();
+        this.pid = pid;
+        this.contentHash = contentHash;
+        this.properties = properties;
+        this.merge = merge;
+        this.meta = meta;
+    }
+
+    static ConfigMapEntry of(ConfigMap map, String pidLabel) {
+        return of(map, pidLabel, null);
+    }
+
+    /**
+     * Converts the ConfigMap, reusing the configuration of the previous entry of the same ConfigMap if its content
+     * hash hasn't changed (i.e. only the annotations or data not used by the configuration have been changed)
+     */
+    static ConfigMapEntry of(ConfigMap map, String pidLabel, ConfigMapEntry previous) {
+        ObjectMeta metadata = map.getMetadata();
+        String pid = metadata.getLabels() != null ? metadata.getLabels().get(pidLabel) : null;
+        Map<String, String> data = map.getData();
+        if (data == null) {
+            return new ConfigMapEntry(metadata, pid, null, null, null, null);
+        }
+
+        Boolean merge = data.containsKey(FABRIC8_CONFIG_MERGE) ? Boolean.valueOf(data.get(FABRIC8_CONFIG_MERGE)) : null;
+        Boolean meta = data.containsKey(FABRIC8_CONFIG_META) ? Boolean.valueOf(data.get(FABRIC8_CONFIG_META)) : null;
+
+        /*
+         * If there is a key named as pid + ".cfg" (as the pid file on karaf)
+         * it will be used as source of configuration instead of the content
+         * of the data field. The name of the key can be changed by setting
+         * the key fabric8.config.pid.cfg
+         *
+         * i.e.
+         *   apiVersion: v1
+         *   data:
+         *     org.ops4j.pax.logging.cfg: |+
+         *       log4j.rootLogger=DEBUG, out
+         */
+        String pidCfg = data.get(FABRIC8_CONFIG_PID_CFG);
+        if (pidCfg == null) {
+            pidCfg = pid + ".cfg";
+        }
+
+        String cfgString = data.get(pidCfg);
+
+        /*
+         * Only the data the configuration is made of is hashed, so changes of
+         * other keys don't cause the configuration to be updated
+         */
+        Map<String, String> content = data;
+        if (Utils.isNotNullOrEmpty(cfgString)) {
+            content = new HashMap<>();
+            content.put(pidCfg, cfgString);
+            content.put(FABRIC8_CONFIG_MERGE, String.valueOf(merge));
+            content.put(FABRIC8_CONFIG_META, String.valueOf(meta));
+        }
+
+        String contentHash = hash(content);
+        if (previous != null && previous.properties != null && previous.hasSameContent(pid, contentHash)) {
+            return new ConfigMapEntry(metadata, pid, contentHash, previous.properties, merge, meta);
+        }
+
+        Map<String, Object> properties = new HashMap<>();
+        if (Utils.isNotNullOrEmpty(cfgString)) {
+            java.util.Properties cfg = new java.util.Properties();
+            try {
+                cfg.load(new StringReader(cfgString));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            for (Map.Entry<Object, Object> entry : cfg.entrySet()) {
+                properties.put((String) entry.getKey(), entry.getValue());
+            }
+        } else {
+            properties.putAll(data);
+        }
+
+        return new ConfigMapEntry(metadata, pid, contentHash, Collections.unmodifiableMap(properties), merge, meta);
+    }
+
+    /**
+     * @return namespace/name of the ConfigMap
+     */
+    String getKey() {
+        return namespace + "/" + name;
+    }
+
+    /**
+     * @return namespace/name of the ConfigMap, see {@link #getKey()}
+     */
+    static String keyOf(ConfigMap map) {
+        return map.getMetadata().getNamespace() + "/" + map.getMetadata().getName();
+    }
+
+    String getNamespace() {
+        return namespace;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getResourceVersion() {
+        return resourceVersion;
+    }
+
+    Map<String, String> getLabels() {
+        return labels;
+    }
+
+    /**
+     * @return value of the PID label
+     */
+    String getPid() {
+        return pid;
+    }
+
+    /**
+     * @return SHA-256 of the data the configuration is made of, or <tt>null</tt> if the ConfigMap has no data
+     */
+    String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * @return the configuration carried by the ConfigMap, or <tt>null</tt> if it has no data
+     */
+    Map<String, Object> getProperties() {
+        return properties;
+    }
+
+    /**
+     * @return whether to merge the configuration with Config Admin, or <tt>null</tt> if not set by the ConfigMap
+     */
+    Boolean getMerge() {
+        return merge;
+    }
+
+    /**
+     * @return whether to add meta data to the configuration, or <tt>null</tt> if not set by the ConfigMap
+     */
+    Boolean getMeta() {
+        return meta;
+    }
+
+    /**
+     * @return whether the other entry carries the same configuration, even if of different resourceVersion
+     */
+    boolean isSameContent(ConfigMapEntry other) {
+        return hasSameContent(other.pid, other.contentHash);
+    }
+
+    boolean isSameVersion(ConfigMapEntry other) {
+        return resourceVersion != null && resourceVersion.equals(other.resourceVersion);
+    }
+
+    /**
+     * @return whether this entry is older than the other one, by resourceVersion
+     */
+    boolean isOlderThan(ConfigMapEntry other) {
+        try {
+            return Long.parseLong(resourceVersion) < Long.parseLong(other.resourceVersion);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private boolean hasSameContent(String otherPid, String otherHash) {
+        return contentHash != null && contentHash.equals(otherHash) && Objects.equals(pid, otherPid);
+    }
+
+    private static String hash(Map<String, String> data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Map.Entry<String, String> entry : new TreeMap<>(data).entrySet()) {
+                digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                if (entry.getValue() != null) {
+                    digest.update(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) 0);
+            }
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.cm;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import io.fabric8.kubernetes.client.Watcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies ConfigMap events to Config Admin. Events of the same PID received within the debounce window are
+ * coalesced, so only the one with the latest resourceVersion is applied. Events of the same PID are applied
+ * one at a time, while different PIDs are applied concurrently.
+ */
+final class ConfigMapEventDispatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigMapEventDispatcher.class);
+
+    private final long debounce;
+    private final BiConsumer<Watcher.Action, ConfigMapEntry> handler;
+    private final ScheduledExecutorService executor;
+    private final Map<String, Slot> slots;
+
+    ConfigMapEventDispatcher(long debounce, int threads, BiConsumer<Watcher.Action, ConfigMapEntry> handler) {
+        this.debounce = debounce;
+        this.handler = handler;
+        this.executor = Executors.newScheduledThreadPool(Math.max(1, threads), new DaemonThreadFactory());
+        this.slots = new HashMap<>();
+    }
+
+    /**
+     * Schedules the event to be applied once the debounce window of its PID expires
+     */
+    void dispatch(String pid, Watcher.Action action, ConfigMapEntry entry) {
+        Slot slot;
+        synchronized (slots) {
+            slot = slots.computeIfAbsent(pid, Slot::new);
+            if (slot.pending != null && entry.isOlderThan(slot.pending.entry)) {
+                LOGGER.debug("Ignoring {} of pid={}, newer event is pending", action, pid);
+                return;
+            }
+            if (slot.pending != null) {
+                LOGGER.debug("Coalescing {} of pid={} with pending {}", action, pid, slot.pending.action);
+            }
+            slot.pending = new Event(action, entry);
+            if (slot.scheduled) {
+                return;
+            }
+            slot.scheduled = true;
+            slot.users++;
+        }
+
+        final Slot scheduled = slot;
+        try {
+            executor.schedule(() -> flush(scheduled), debounce, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Ignoring {} of pid={}, dispatcher is closed", action, pid);
+        }
+    }
+
+    /**
+     * Applies the event in the calling thread, but still exclusively with the other events of the same PID
+     */
+    void apply(String pid, Watcher.Action action, ConfigMapEntry entry) {
+        Slot slot;
+        synchronized (slots) {
+            slot = slots.computeIfAbsent(pid, Slot::new);
+            slot.users++;
+        }
+        try {
+            synchronized (slot) {
+                handler.accept(action, entry);
+            }
+        } finally {
+            release(slot);
+        }
+    }
+
+    void close() {
+        executor.shutdownNow();
+        synchronized (slots) {
+            slots.clear();
+        }
+    }
+
+    // ***********************
+    // Helpers
+    // ***********************
+
+    private void flush(Slot slot) {
+        try {
+            synchronized (slot) {
+                Event event;
+                synchronized (slots) {
+                    event = slot.pending;
+                    slot.pending = null;
+                    slot.scheduled = false;
+                }
+                if (event != null) {
+                    handler.accept(event.action, event.entry);
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Error applying configuration pid={}", slot.pid, e);
+        } finally {
+            release(slot);
+        }
+    }
+
+    private void release(Slot slot) {
+        synchronized (slots) {
+            if (--slot.users == 0 && slot.pending == null) {
+                slots.remove(slot.pid, slot);
+            }
+        }
+    }
+
+    private static final class Slot {
+        private final String pid;
+        // guarded by slots
+        private Event pending;
+        private boolean scheduled;
+        private int users;
+
+        Slot(String pid) {
+            this.pid = pid;
+        }
+    }
+
+    private static final class Event {
+        private final Watcher.Action action;
+        private final ConfigMapEntry entry;
+
+        Event(Watcher.Action action, ConfigMapEntry entry) {
+            this.action = action;
+            this.entry = entry;
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "fabric8-karaf-cm-bridge-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.cm;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapList;
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.client.HttpClientAware;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+import io.fabric8.kubernetes.client.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the handler in sync with the selected ConfigMaps, like an informer does: the ConfigMaps are listed, then
+ * watched from the resourceVersion of the list. When the watch is closed it's reopened from the last seen
+ * resourceVersion and, if that is too old (410 Gone), the ConfigMaps are listed again and the differences are
+ * passed to the handler as events. The ConfigMaps are also listed again every resync period, so events missed
+ * for any reason don't leave the configuration stale until restart.
+ * <p/>
+ * Each reflector covers one scope (namespace and label selector), and records the last seen state in
+ * {@link ConfigMapCache} shared with the other scopes, so a ConfigMap seen by several scopes is passed to the
+ * handler once. The ConfigMaps are listed in pages of given size.
+ * <p/>
+ * The client used by the selector should not reconnect the watches by itself (see {@link #createWatchClient}), as
+ * on 410 Gone it would silently watch from the current state, skipping the changes done in between. Such client
+ * reports 410 Gone received by the watch just as unexpectedly closed connection, so a watch closed before receiving
+ * any event shortly after it was opened is handled as 410 Gone. Only then, or on an error status returned by the
+ * API server, the ConfigMaps are listed again - a watch closed for other reasons (e.g., connection of a quiet
+ * namespace closed after a while) is just reopened from the last seen resourceVersion.
+ */
+final class ConfigMapReflector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigMapReflector.class);
+    private static final long INITIAL_BACKOFF = 1000;
+    private static final long GONE_WINDOW = 5000;
+
+    private final String scope;
+    private final Supplier<FilterWatchListDeletable<ConfigMap, ConfigMapList, Boolean, Watch, Watcher<ConfigMap>>> selector;
+    private final ConfigMapCache cache;
+    private final String pidLabel;
+    private final BiConsumer<Watcher.Action, ConfigMapEntry> handler;
+    private final int listLimit;
+    private final long resync;
+    private final long maxBackoff;
+    private final ScheduledExecutorService executor;
+
+    private boolean listed;
+    private String resourceVersion;
+    private Watch watch;
+    private long watchStarted;
+    private boolean watchReceived;
+    private long goneWindow = GONE_WINDOW;
+    private ScheduledFuture<?> resyncTask;
+    private int generation;
+    private int failures;
+    private boolean closed;
+
+    ConfigMapReflector(
+            String scope,
+            Supplier<FilterWatchListDeletable<ConfigMap, ConfigMapList, Boolean, Watch, Watcher<ConfigMap>>> selector,
+            ConfigMapCache cache,
+            String pidLabel,
+            BiConsumer<Watcher.Action, ConfigMapEntry> handler,
+            int listLimit,
+            long resync,
+            long maxBackoff,
+            ScheduledExecutorService executor) {
+
+        this.scope = scope;
+        this.selector = selector;
+        this.cache = cache;
+        this.pidLabel = pidLabel;
+        this.handler = handler;
+        this.listLimit = listLimit;
+        this.resync = resync;
+        this.maxBackoff = Math.max(INITIAL_BACKOFF, maxBackoff);
+        this.executor = executor;
+    }
+
+    /**
+     * Lists the ConfigMaps. The returned ConfigMaps (the ones not seen by other scopes yet) are not passed to the
+     * handler.
+     */
+    synchronized List<ConfigMapEntry> list() {
+        List<ConfigMapEntry> entries = new ArrayList<>();
+        for (ConfigMapEntry entry : listAll()) {
+            if (isChanged(cache.put(scope, entry), entry)) {
+                entries.add(entry);
+            }
+        }
+        listed = true;
+        return entries;
+    }
+
+    /**
+     * Starts watching the ConfigMaps from the resourceVersion of the last list (or lists them first, if that
+     * failed) and, if enabled, the periodic resync
+     */
+    synchronized void watch() {
+        if (listed) {
+            startWatch();
+        } else {
+            schedule(true);
+        }
+        if (resync > 0) {
+            resyncTask = executor.scheduleWithFixedDelay(this::resync, resync, resync, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Creates client sharing the connections of given one, which leaves reconnecting of the watches to the reflector
+     */
+    static KubernetesClient createWatchClient(KubernetesClient client) {
+        if (client instanceof HttpClientAware) {
+            Config config = new ConfigBuilder(client.getConfiguration()).withWatchReconnectLimit(0).build();
+            return new DefaultKubernetesClient(((HttpClientAware) client).getHttpClient(), config);
+        }
+
+        if (client != null) {
+            LOGGER.warn("Can't disable reconnecting of watches by {}, ConfigMaps may be stale until resync", client);
+        }
+        return client;
+    }
+
+    /**
+     * Sets the time (in milliseconds) after opening the watch, within which the watch closed without any event is
+     * considered closed because of 410 Gone
+     */
+    synchronized void setGoneWindow(long goneWindow) {
+        this.goneWindow = goneWindow;
+    }
+
+    synchronized void close() {
+        closed = true;
+        if (resyncTask != null) {
+            resyncTask.cancel(false);
+        }
+        closeWatch();
+    }
+
+    // ***********************
+    // Helpers
+    // ***********************
+
+    private void startWatch() {
+        if (closed) {
+            return;
+        }
+        closeWatch();
+
+        final int watchGeneration = ++generation;
+        try {
+            watch = selector.get().watch(resourceVersion, new Watcher<ConfigMap>() {
+                @Override
+                public void eventReceived(Action action, ConfigMap map) {
+                    onEvent(watchGeneration, action, map);
+                }
+
+                @Override
+                public void onClose(KubernetesClientException cause) {
+                    onWatchClosed(watchGeneration, cause);
+                }
+            });
+            watchStarted = System.currentTimeMillis();
+            watchReceived = false;
+            LOGGER.debug("Watching ConfigMaps of {} from resourceVersion={}", scope, resourceVersion);
+        } catch (KubernetesClientException e) {
+            // onClose() may have been already called and handled the failure
+            if (watchGeneration == generation) {
+                generation++;
+                LOGGER.warn("Error watching ConfigMaps of {}", scope, e);
+                schedule(e.getCode() == HttpURLConnection.HTTP_GONE);
+            }
+        }
+    }
+
+    private void closeWatch() {
+        if (watch != null) {
+            // the watch is closed on purpose, so its onClose() has to be ignored
+            generation++;
+            watch.close();
+            watch = null;
+        }
+    }
+
+    private synchronized void onEvent(int watchGeneration, Watcher.Action action, ConfigMap map) {
+        if (closed || watchGeneration != generation) {
+            return;
+        }
+
+        failures = 0;
+        watchReceived = true;
+        if (map.getMetadata() == null) {
+            return;
+        }
+        if (map.getMetadata().getResourceVersion() != null) {
+            resourceVersion = map.getMetadata().getResourceVersion();
+        }
+
+        ConfigMapEntry entry = ConfigMapEntry.of(map, pidLabel, cache.get(ConfigMapEntry.keyOf(map)));
+        if (action == Watcher.Action.DELETED) {
+            if (cache.remove(scope, entry.getKey()) != null) {
+                handler.accept(action, entry);
+            }
+        } else if (action != Watcher.Action.ERROR) {
+            if (isChanged(cache.put(scope, entry), entry)) {
+                handler.accept(action, entry);
+            }
+        } else {
+            handler.accept(action, entry);
+        }
+    }
+
+    private synchronized void onWatchClosed(int watchGeneration, KubernetesClientException cause) {
+        if (closed || watchGeneration != generation) {
+            return;
+        }
+
+        generation++;
+        watch = null;
+        long watched = System.currentTimeMillis() - watchStarted;
+        if (watched > maxBackoff) {
+            // the watch has been working for a while, so don't back off because of previous failures
+            failures = 0;
+        }
+        if (cause != null && (isErrorStatus(cause) || !watchReceived && watched < goneWindow)) {
+            LOGGER.info("ConfigMaps watch of {} from resourceVersion={} closed ({}), listing them again",
+                scope, resourceVersion, cause.getMessage());
+            resourceVersion = null;
+            schedule(true);
+        } else {
+            LOGGER.info("ConfigMaps watch of {} closed ({}), reopening it from resourceVersion={}",
+                scope, cause != null ? cause.getMessage() : "no error", resourceVersion);
+            schedule(false);
+        }
+    }
+
+    /**
+     * @return <tt>true</tt> if the watch was closed because of 410 Gone or other error status returned by the API
+     * server, rather than just closed connection
+     */
+    private static boolean isErrorStatus(KubernetesClientException cause) {
+        return cause.getCode() == HttpURLConnection.HTTP_GONE
+            || cause.getStatus() != null && cause.getCode() >= HttpURLConnection.HTTP_BAD_REQUEST;
+    }
+
+    /**
+     * Reopens the watch, after listing the ConfigMaps again if requested, with exponential backoff on failures
+     */
+    private void schedule(final boolean relist) {
+        long delay = relist && failures == 0 ? 0 : Math.min(maxBackoff, INITIAL_BACKOFF << Math.min(failures, 16));
+        failures++;
+        try {
+            executor.schedule(() -> {
+                synchronized (ConfigMapReflector.this) {
+                    if (!relist || relist()) {
+                        startWatch();
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Not watching ConfigMaps of {}, bridge is stopped", scope);
+        }
+    }
+
+    private synchronized void resync() {
+        if (!closed) {
+            LOGGER.debug("Resync of ConfigMaps of {}", scope);
+            relist();
+        }
+    }
+
+    /**
+     * Lists the ConfigMaps and passes the differences against the last seen state to the handler
+     *
+     * @return <tt>false</tt> if the ConfigMaps can't be listed (and another attempt is scheduled)
+     */
+    private boolean relist() {
+        if (closed) {
+            return false;
+        }
+
+        List<ConfigMapEntry> entries;
+        try {
+            entries = listAll();
+        } catch (KubernetesClientException e) {
+            LOGGER.warn("Error listing ConfigMaps of {}", scope, e);
+            schedule(true);
+            return false;
+        }
+
+        Set<String> removed = cache.keys(scope);
+        for (ConfigMapEntry entry : entries) {
+            removed.remove(entry.getKey());
+
+            ConfigMapEntry previous = cache.put(scope, entry);
+            if (previous == null) {
+                handler.accept(Watcher.Action.ADDED, entry);
+            } else if (isChanged(previous, entry)) {
+                handler.accept(Watcher.Action.MODIFIED, entry);
+            }
+        }
+        for (String key : removed) {
+            ConfigMapEntry entry = cache.remove(scope, key);
+            if (entry != null) {
+                handler.accept(Watcher.Action.DELETED, entry);
+            }
+        }
+
+        listed = true;
+        return true;
+    }
+
+    /**
+     * ConfigMaps whose content hasn't changed (i.e. only the annotations have been changed) are not passed to the
+     * handler, so the configuration isn't updated
+     */
+    private static boolean isChanged(ConfigMapEntry previous, ConfigMapEntry entry) {
+        if (previous == null) {
+            return true;
+        }
+        if (previous.isSameVersion(entry)) {
+            return false;
+        }
+        if (previous.isSameContent(entry)) {
+            LOGGER.debug("Ignoring ConfigMap {} resourceVersion={} (content not changed)",
+                entry.getKey(), entry.getResourceVersion());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lists all the pages of ConfigMaps, and remembers the resourceVersion of the list
+     */
+    private List<ConfigMapEntry> listAll() {
+        List<ConfigMapEntry> entries = new ArrayList<>();
+        String listVersion = null;
+        String continueToken = null;
+
+        do {
+            ConfigMapList page = listLimit > 0
+                ? selector.get().list(listLimit, continueToken)
+                : selector.get().list();
+
+            for (ConfigMap map : page.getItems()) {
+                entries.add(ConfigMapEntry.of(map, pidLabel, cache.get(ConfigMapEntry.keyOf(map))));
+            }
+            if (page.getMetadata() != null) {
+                if (listVersion == null) {
+                    listVersion = page.getMetadata().getResourceVersion();
+                }
+                continueToken = page.getMetadata().getContinue();
+            } else {
+                continueToken = null;
+            }
+        } while (listLimit > 0 && Utils.isNotNullOrEmpty(continueToken));
+
+        resourceVersion = listVersion;
+        return entries;
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.cm;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static io.fabric8.karaf.cm.KubernetesConstants.CM_META_KEYS;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_META_KEYS;
+
+/**
+ * Three-way comparison of the properties of a ConfigMap, as last applied and as they're now, with the properties
+ * stored in Config Admin.
+ */
+final class ConfigurationDiff {
+
+    private ConfigurationDiff() {
+    }
+
+    /**
+     * Computes the properties to be stored in Config Admin.
+     *
+     * @param configAdmin the properties stored in Config Admin, <tt>null</tt> if the configuration is new
+     * @param previous    the properties of the ConfigMap as last applied, <tt>null</tt> if unknown
+     * @param current     the properties of the ConfigMap
+     * @param merge       whether the properties of the ConfigMap are merged into the ones stored in Config Admin
+     *                    (so only the properties removed from the ConfigMap are removed), or replace them
+     * @return the new properties, or <tt>null</tt> if they don't differ from the ones stored in Config Admin
+     *         (ignoring fabric8 meta data)
+     */
+    static Hashtable<String, Object> compute(
+            Dictionary<String, Object> configAdmin,
+            Map<String, Object> previous,
+            Map<String, Object> current,
+            boolean merge) {
+
+        if (configAdmin == null) {
+            return new Hashtable<>(current);
+        }
+
+        Hashtable<String, Object> target;
+        if (merge) {
+            target = copy(configAdmin);
+            for (Map.Entry<String, Object> entry : current.entrySet()) {
+                // Do not override ConfigAdmin meta data
+                if (!CM_META_KEYS.contains(entry.getKey())) {
+                    target.put(entry.getKey(), entry.getValue());
+                }
+            }
+            if (previous != null) {
+                for (String key : previous.keySet()) {
+                    if (!current.containsKey(key) && !FABRIC8_META_KEYS.contains(key)) {
+                        target.remove(key);
+                    }
+                }
+            }
+        } else {
+            target = new Hashtable<>(current);
+        }
+
+        return isSame(configAdmin, target) ? null : target;
+    }
+
+    /**
+     * Compares the properties ignoring the meta data, and the types of the values - string <tt>8080</tt> is the
+     * same as integer <tt>8080</tt>, as the ConfigMap always carries strings while the values in Config Admin may
+     * have been converted
+     */
+    static boolean isSame(Dictionary<String, Object> configAdmin, Map<String, Object> properties) {
+        int count = 0;
+        for (Enumeration<String> e = configAdmin.keys(); e.hasMoreElements();) {
+            String key = e.nextElement();
+            if (FABRIC8_META_KEYS.contains(key)) {
+                continue;
+            }
+            count++;
+            if (!properties.containsKey(key) || !Objects.equals(normalize(configAdmin.get(key)), normalize(properties.get(key)))) {
+                return false;
+            }
+        }
+        for (String key : properties.keySet()) {
+            if (!FABRIC8_META_KEYS.contains(key)) {
+                count--;
+            }
+        }
+        return count == 0;
+    }
+
+    private static Object normalize(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.getClass().isArray()) {
+            List<Object> list = new ArrayList<>();
+            for (int i = 0; i < Array.getLength(value); i++) {
+                list.add(normalize(Array.get(value, i)));
+            }
+            return list;
+        }
+        if (value instanceof Collection) {
+            List<Object> list = new ArrayList<>();
+            for (Object item : (Collection<?>) value) {
+                list.add(normalize(item));
+            }
+            return list;
+        }
+        return value.toString();
+    }
+
+    private static Hashtable<String, Object> copy(Dictionary<String, Object> dictionary) {
+        Hashtable<String, Object> copy = new Hashtable<>();
+        for (Enumeration<String> e = dictionary.keys(); e.hasMoreElements();) {
+            String key = e.nextElement();
+            copy.put(key, dictionary.get(key));
+        }
+        return copy;
+    }
+}
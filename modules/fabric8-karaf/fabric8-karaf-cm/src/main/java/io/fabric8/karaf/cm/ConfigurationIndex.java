@@ -0,0 +1,158 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.cm;
+
+import java.io.IOException;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_PID;
+
+/**
+ * Index of configurations managed by the bridge, by their <tt>fabric8.pid</tt> property, so the bridge doesn't
+ * have to list (and filter) all the configurations for each ConfigMap event.
+ */
+final class ConfigurationIndex {
+    // fabric8.pid -> configuration
+    private final Map<String, Indexed> byFabric8Pid;
+    // configuration PID -> fabric8.pid
+    private final Map<String, String> byPid;
+
+    ConfigurationIndex() {
+        this.byFabric8Pid = new HashMap<>();
+        this.byPid = new HashMap<>();
+    }
+
+    /**
+     * Replaces the content of the index with all the configurations having <tt>fabric8.pid</tt> property
+     */
+    synchronized void load(ConfigurationAdmin configAdmin) throws IOException, InvalidSyntaxException {
+        byFabric8Pid.clear();
+        byPid.clear();
+
+        Configuration[] configurations = configAdmin.listConfigurations("(" + FABRIC8_PID + "=*)");
+        if (configurations != null) {
+            for (Configuration configuration : configurations) {
+                Dictionary<String, Object> properties = configuration.getProperties();
+                Object fabric8pid = properties != null ? properties.get(FABRIC8_PID) : null;
+                if (fabric8pid instanceof String) {
+                    put((String) fabric8pid, configuration);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the configuration with given <tt>fabric8.pid</tt>, or <tt>null</tt> if it isn't indexed or it has
+     * been deleted or changed since it was indexed
+     */
+    synchronized Configuration get(String fabric8pid) {
+        Indexed indexed = byFabric8Pid.get(fabric8pid);
+        if (indexed == null) {
+            return null;
+        }
+
+        try {
+            Dictionary<String, Object> properties = indexed.configuration.getProperties();
+            if (properties != null && fabric8pid.equals(properties.get(FABRIC8_PID))) {
+                return indexed.configuration;
+            }
+        } catch (IllegalStateException e) {
+            // the configuration has been deleted
+        }
+
+        byFabric8Pid.remove(fabric8pid);
+        byPid.remove(indexed.pid, fabric8pid);
+        return null;
+    }
+
+    synchronized void put(String fabric8pid, Configuration configuration) {
+        Indexed indexed = new Indexed(configuration);
+        Indexed previous = byFabric8Pid.put(fabric8pid, indexed);
+        if (previous != null && !previous.pid.equals(indexed.pid)) {
+            byPid.remove(previous.pid, fabric8pid);
+        }
+        String previousFabric8Pid = byPid.put(indexed.pid, fabric8pid);
+        if (previousFabric8Pid != null && !previousFabric8Pid.equals(fabric8pid)) {
+            byFabric8Pid.remove(previousFabric8Pid);
+        }
+    }
+
+    /**
+     * Re-reads the configuration with given (Config Admin) PID, indexing it by its current <tt>fabric8.pid</tt>
+     * or removing it if it no longer has one
+     */
+    synchronized void update(ConfigurationAdmin configAdmin, String pid) throws IOException, InvalidSyntaxException {
+        Configuration[] configurations = configAdmin.listConfigurations(pidFilter(pid));
+        Dictionary<String, Object> properties = configurations != null && configurations.length > 0
+            ? configurations[0].getProperties() : null;
+        Object fabric8pid = properties != null ? properties.get(FABRIC8_PID) : null;
+        if (fabric8pid instanceof String) {
+            put((String) fabric8pid, configurations[0]);
+        } else {
+            removePid(pid);
+        }
+    }
+
+    /**
+     * Removes the configuration with given (Config Admin) PID
+     */
+    synchronized void removePid(String pid) {
+        String fabric8pid = byPid.remove(pid);
+        if (fabric8pid != null) {
+            byFabric8Pid.remove(fabric8pid);
+        }
+    }
+
+    synchronized void clear() {
+        byFabric8Pid.clear();
+        byPid.clear();
+    }
+
+    /**
+     * Returns the filter matching configuration with given PID, with the characters having special meaning in
+     * LDAP filter (RFC 1960) escaped, so the PID is matched literally
+     */
+    static String pidFilter(String pid) {
+        StringBuilder sb = new StringBuilder(pid.length() + 16);
+        sb.append('(').append(Constants.SERVICE_PID).append('=');
+        for (int i = 0; i < pid.length(); i++) {
+            char c = pid.charAt(i);
+            if (c == '(' || c == ')' || c == '*' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.append(')').toString();
+    }
+
+    private static final class Indexed {
+        private final Configuration configuration;
+        // remembered as it can't be retrieved once the configuration is deleted
+        private final String pid;
+
+        Indexed(Configuration configuration) {
+            this.configuration = configuration;
+            this.pid = configuration.getPid();
+        }
+    }
+}
@@ -15,14 +15,19 @@
  */
 package io.fabric8.karaf.cm;
 
-import java.io.StringReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Dictionary;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
 
 import io.fabric8.kubernetes.api.model.ConfigMap;
@@ -41,25 +46,38 @@ import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.References;
+import org.apache.felix.scr.annotations.Service;
+import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
+import org.osgi.service.cm.ConfigurationListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static io.fabric8.karaf.cm.KubernetesConstants.CM_META_KEYS;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CM_BRIDGE_ENABLED;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CM_BRIDGE_ENABLED_DEFAULT;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_LIST_LIMIT;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_LIST_LIMIT_DEFAULT;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_MERGE;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_MERGE_DEFAULT;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_META;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_META_DEFAULT;
-import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_PID_CFG;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_NAMESPACES;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_WATCH;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_WATCH_BACKOFF_MAX;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_WATCH_BACKOFF_MAX_DEFAULT;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_WATCH_DEBOUNCE;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_WATCH_DEBOUNCE_DEFAULT;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_WATCH_DEFAULT;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_WATCH_RESYNC;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_WATCH_RESYNC_DEFAULT;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_WATCH_THREADS;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_WATCH_THREADS_DEFAULT;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_K8S_META_CONTENT_HASH;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_K8S_META_NAME;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_K8S_META_NAMESPACE;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_K8S_META_RESOURCE_VERSION;
-import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_META_KEYS;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_PID;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_PID_FILTERS;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_PID_LABEL;
@@ -82,32 +100,53 @@ import static io.fabric8.kubernetes.client.utils.Utils.getSystemPropertyOrEnvVar
         policy = ReferencePolicy.STATIC,
         cardinality = ReferenceCardinality.MANDATORY_UNARY)
 })
-public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
+@Service(ConfigurationListener.class)
+public class KubernetesConfigAdminBridge implements ConfigurationListener {
     private static final Logger LOGGER = LoggerFactory.getLogger(KubernetesConfigAdminBridge.class);
 
-    private final Object lock;
     private final AtomicReference<ConfigurationAdmin> configAdmin;
     private final AtomicReference<KubernetesClient> kubernetesClient;
+    private final ConfigurationIndex configurations;
+    // properties of the ConfigMaps as last applied, by fabric8.pid
+    private final Map<String, Map<String, Object>> applied;
 
     private boolean enabled;
     private String pidLabel;
-    private Map<String, Set<String>> filters;
-    private Watch watch;
+    private List<String> namespaces;
+    private List<Map<String, Set<String>>> shards;
+    private final ConfigMapCache cache;
+    private final List<ConfigMapReflector> reflectors;
+    private ScheduledExecutorService reflectorExecutor;
+    private volatile KubernetesClient watchClient;
     private boolean configMerge;
     private boolean configMeta;
     private boolean configWatch;
+    private int configWatchDebounce;
+    private int configWatchThreads;
+    private int configWatchResync;
+    private int configWatchBackoffMax;
+    private int configListLimit;
+    private ConfigMapEventDispatcher dispatcher;
 
     public KubernetesConfigAdminBridge() {
         this.enabled = FABRIC8_CM_BRIDGE_ENABLED_DEFAULT;
-        this.lock = new Object();
         this.configAdmin = new AtomicReference<>();
         this.kubernetesClient = new AtomicReference<>();
         this.configMerge = FABRIC8_CONFIG_MERGE_DEFAULT;
         this.configMeta = FABRIC8_CONFIG_META_DEFAULT;
         this.configWatch = FABRIC8_CONFIG_WATCH_DEFAULT;
-        this.watch = null;
+        this.configWatchDebounce = FABRIC8_CONFIG_WATCH_DEBOUNCE_DEFAULT;
+        this.configWatchThreads = FABRIC8_CONFIG_WATCH_THREADS_DEFAULT;
+        this.configWatchResync = FABRIC8_CONFIG_WATCH_RESYNC_DEFAULT;
+        this.configWatchBackoffMax = FABRIC8_CONFIG_WATCH_BACKOFF_MAX_DEFAULT;
+        this.configListLimit = FABRIC8_CONFIG_LIST_LIMIT_DEFAULT;
         this.pidLabel = FABRIC8_PID_LABEL_DEFAULT;
-        this.filters = null;
+        this.namespaces = null;
+        this.shards = null;
+        this.cache = new ConfigMapCache();
+        this.reflectors = new ArrayList<>();
+        this.configurations = new ConfigurationIndex();
+        this.applied = new ConcurrentHashMap<>();
     }
 
     // ***********************
@@ -121,31 +160,92 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
         configMerge = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_MERGE, configMerge);
         configMeta = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_META, configMeta);
         configWatch = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_WATCH, configWatch);
-        filters = new HashMap<>();
+        configWatchDebounce = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_WATCH_DEBOUNCE, configWatchDebounce);
+        configWatchThreads = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_WATCH_THREADS, configWatchThreads);
+        configWatchResync = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_WATCH_RESYNC, configWatchResync);
+        configWatchBackoffMax = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_WATCH_BACKOFF_MAX, configWatchBackoffMax);
+        configListLimit = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_LIST_LIMIT, configListLimit);
+
+        /*
+         * ConfigMaps may be bridged from several namespaces, i.e.
+         *
+         *   fabric8.config.namespaces=ns1,ns2
+         *
+         * by default the ConfigMaps of the namespace of the client are bridged
+         */
+        namespaces = new ArrayList<>();
+        String namespaceList = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_NAMESPACES);
+        if (!Utils.isNullOrEmpty(namespaceList)) {
+            for (String namespace : namespaceList.split(",")) {
+                if (!namespace.trim().isEmpty()) {
+                    namespaces.add(namespace.trim());
+                }
+            }
+        }
+        if (namespaces.isEmpty()) {
+            namespaces.add(null);
+        }
 
+        /*
+         * The ConfigMaps may be split in shards, each one listed and watched
+         * separately, by alternatives of the filters separated by '|', i.e.
+         *
+         *   fabric8.pid.filters=tier=front|tier=back;batch,region=eu
+         */
+        shards = new ArrayList<>();
         String filterList = getSystemPropertyOrEnvVar(FABRIC8_PID_FILTERS);
         if (!Utils.isNullOrEmpty(filterList)) {
-            for (String filter : filterList.split(",")) {
-                String[] kv = filter.split("=");
-                if (kv.length == 2) {
-                    Set<String> orConditions = new HashSet<>();
-                    for (String orCondition : kv[1].split(";")) {
-                        orConditions.add(orCondition.trim());
-                    }
-                    filters.put(kv[0].trim(), orConditions);
-                }
+            for (String shard : filterList.split("\\|")) {
+                shards.add(parseFilters(shard));
             }
         }
+        if (shards.isEmpty()) {
+            shards.add(Collections.emptyMap());
+        }
 
         if (enabled) {
-            synchronized (lock) {
-                watchConfigMapList();
+            try {
+                configurations.load(configAdmin.get());
+            } catch (IOException | InvalidSyntaxException e) {
+                LOGGER.warn("Error listing configurations", e);
+            }
 
-                ConfigMapList list = getConfigMapList();
-                if (list != null) {
-                    for (ConfigMap map : list.getItems()) {
-                        updateConfig(map);
+            dispatcher = new ConfigMapEventDispatcher(configWatchDebounce, configWatchThreads, this::applyEvent);
+            watchClient = ConfigMapReflector.createWatchClient(kubernetesClient.get());
+            reflectorExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "fabric8-karaf-cm-bridge-watch");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            for (String namespace : namespaces) {
+                for (int i = 0; i < shards.size(); i++) {
+                    final Map<String, Set<String>> filters = shards.get(i);
+                    reflectors.add(new ConfigMapReflector(
+                        (namespace != null ? namespace : "") + "|" + i,
+                        () -> selectConfigMaps(namespace, filters),
+                        cache,
+                        pidLabel,
+                        (action, entry) -> dispatcher.dispatch(entry.getPid(), action, entry),
+                        configListLimit,
+                        configWatchResync,
+                        configWatchBackoffMax,
+                        reflectorExecutor));
+                }
+            }
+
+            for (ConfigMapReflector reflector : reflectors) {
+                try {
+                    for (ConfigMapEntry entry : reflector.list()) {
+                        dispatcher.apply(entry.getPid(), Watcher.Action.ADDED, entry);
                     }
+                } catch (KubernetesClientException e) {
+                    LOGGER.warn("Error listing ConfigMaps", e);
+                }
+            }
+            if (configWatch) {
+                for (ConfigMapReflector reflector : reflectors) {
+                    reflector.watch();
                 }
             }
         }
@@ -153,9 +253,21 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
 
     @Deactivate
     void deactivate() {
-        if (watch != null) {
-            watch.close();
+        for (ConfigMapReflector reflector : reflectors) {
+            reflector.close();
+        }
+        reflectors.clear();
+        if (reflectorExecutor != null) {
+            reflectorExecutor.shutdownNow();
+            reflectorExecutor = null;
+        }
+        watchClient = null;
+        if (dispatcher != null) {
+            dispatcher.close();
         }
+        configurations.clear();
+        applied.clear();
+        cache.clear();
     }
 
     // ***********************
@@ -179,156 +291,149 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
     }
 
     // ***********************
-    // Watcher
+    // ConfigurationListener
     // ***********************
 
+    /**
+     * Keeps {@link ConfigurationIndex} up to date with the changes not done by this bridge. Updated configuration
+     * is re-read by its PID, as its <tt>fabric8.pid</tt> may have been added, changed or removed.
+     */
     @Override
-    public void eventReceived(Action action, ConfigMap map) {
-        synchronized (lock) {
-            switch (action) {
-            case ADDED:
-            case MODIFIED:
-                updateConfig(map);
-                break;
-            case DELETED:
-            case ERROR:
-                deleteConfig(map);
-                break;
+    public void configurationEvent(ConfigurationEvent event) {
+        if (event.getType() == ConfigurationEvent.CM_DELETED) {
+            configurations.removePid(event.getPid());
+        } else if (event.getType() == ConfigurationEvent.CM_UPDATED && enabled) {
+            ConfigurationAdmin ca = configAdmin.get();
+            if (ca == null) {
+                return;
+            }
+            try {
+                configurations.update(ca, event.getPid());
+            } catch (IOException | InvalidSyntaxException e) {
+                LOGGER.debug("Error indexing configuration {}", event.getPid(), e);
             }
         }
     }
 
-    @Override
-    public void onClose(KubernetesClientException e) {
-    }
-
     // **********************
     // ConfigAdmin
     // **********************
 
-    private void updateConfig(ConfigMap map) {
-        Long ver = Long.parseLong(map.getMetadata().getResourceVersion());
-        String pid = map.getMetadata().getLabels().get(pidLabel);
+    private void applyEvent(Watcher.Action action, ConfigMapEntry entry) {
+        switch (action) {
+        case ADDED:
+        case MODIFIED:
+            updateConfig(entry);
+            break;
+        case DELETED:
+        case ERROR:
+            deleteConfig(entry);
+            break;
+        }
+    }
+
+    private void updateConfig(ConfigMapEntry entry) {
+        String pid = entry.getPid();
         String[] p = parsePid(pid);
 
         try {
-            final Configuration config = getConfiguration(configAdmin.get(), pid, p[0], p[1]);
-            final Map<String, String> configMapData = map.getData();
-
-            if (configMapData == null) {
-                LOGGER.debug("Ignoring configuration pid={}, (empty)", config.getPid());
-                return;
-            }
-
-            final Dictionary<String, Object> props = config.getProperties();
-            final Hashtable<String, Object> configAdmCfg = props != null ? new Hashtable<String, Object>() : null;
-            Hashtable<String, Object> configMapCfg = new Hashtable<>();
-
             /*
-             * If there is a key named as pid + ".cfg" (as the pid file on karaf)
-             * it will be used as source of configuration instead of the content
-             * of the data field. The name of the key can be changed by setting
-             * the key fabric8.config.pid.cfg
-             *
-             * i.e.
-             *   apiVersion: v1
-             *   data:
-             *     org.ops4j.pax.logging.cfg: |+
-             *       log4j.rootLogger=DEBUG, out
+             * The configuration of the ConfigMap has been already parsed, see
+             * ConfigMapEntry
              */
-            String pidCfg = configMapData.get(FABRIC8_CONFIG_PID_CFG);
-            if (pidCfg == null) {
-                pidCfg = pid + ".cfg";
+            final Map<String, Object> configMapCfg = entry.getProperties();
+            if (configMapCfg == null) {
+                LOGGER.debug("Ignoring configuration pid={}, (empty)", pid);
+                return;
             }
 
-            String cfgString = configMapData.get(pidCfg);
-            if (Utils.isNotNullOrEmpty(cfgString)) {
-                java.util.Properties cfg = new java.util.Properties();
-                cfg.load(new StringReader(cfgString));
-
-                for(Map.Entry<Object, Object>  entry: cfg.entrySet()) {
-                    configMapCfg.put((String)entry.getKey(), entry.getValue());
-                }
-            }  else {
-                for (Map.Entry<String, String> entry : map.getData().entrySet()) {
-                    configMapCfg.put(entry.getKey(), entry.getValue());
-                }
-            }
+            Long ver = Long.parseLong(entry.getResourceVersion());
+            final Configuration config = getConfiguration(configAdmin.get(), pid, p[0], p[1]);
+            final Dictionary<String, Object> props = config.getProperties();
 
             /*
              * Configure if mete-data should be added to the Config Admin or not
              */
-            boolean meta = configMapData.containsKey(FABRIC8_CONFIG_META)
-                ? Boolean.valueOf(configMapData.get(FABRIC8_CONFIG_META))
-                : configMeta;
+            boolean meta = entry.getMeta() != null ? entry.getMeta() : configMeta;
 
             /*
              * Configure if ConfigMap data should be merge with ConfigAdmin or it
              * should override it.
              */
-            boolean merge = configMapData.containsKey(FABRIC8_CONFIG_MERGE)
-                ? Boolean.valueOf(configMapData.get(FABRIC8_CONFIG_MERGE))
-                : configMerge;
+            boolean merge = entry.getMerge() != null ? entry.getMerge() : configMerge;
 
-            if (configAdmCfg != null) {
+            /*
+             * The hash of the content the configuration has been made of is
+             * kept with the configuration, so it's not updated again (i.e. on
+             * restart, or when only the annotations of the ConfigMap changed)
+             */
+            if (props != null && entry.getContentHash().equals(props.get(FABRIC8_K8S_META_CONTENT_HASH))) {
+                LOGGER.debug("Ignoring configuration pid={}, version={} (content not changed)", config.getPid(), ver);
+                applied.put(pid, configMapCfg);
+                return;
+            }
+
+            if (props != null) {
                 Long oldVer = (Long)props.get(FABRIC8_K8S_META_RESOURCE_VERSION);
                 if (oldVer != null && (oldVer >= ver)) {
                     LOGGER.debug("Ignoring configuration pid={}, oldVersion={} newVersion={} (no changes)", config.getPid(), oldVer, ver);
                     return;
                 }
-
-                for (Enumeration<String> e = props.keys(); e.hasMoreElements();) {
-                    String key = e.nextElement();
-                    Object val = props.get(key);
-                    configAdmCfg.put(key, val);
-                }
             }
 
-            if (shouldUpdate(configAdmCfg, configMapCfg)) {
+            Hashtable<String, Object> newCfg = ConfigurationDiff.compute(props, applied.get(pid), configMapCfg, merge);
+
+            if (newCfg != null) {
                 LOGGER.debug("Updating configuration pid={}", config.getPid());
 
                 if (meta) {
-                    configMapCfg.put(FABRIC8_PID, pid);
-                    configMapCfg.put(FABRIC8_K8S_META_RESOURCE_VERSION, ver);
-                    configMapCfg.put(FABRIC8_K8S_META_NAME, map.getMetadata().getName());
-                    configMapCfg.put(FABRIC8_K8S_META_NAMESPACE, map.getMetadata().getNamespace());
+                    newCfg.put(FABRIC8_PID, pid);
+                    newCfg.put(FABRIC8_K8S_META_RESOURCE_VERSION, ver);
+                    newCfg.put(FABRIC8_K8S_META_NAME, entry.getName());
+                    newCfg.put(FABRIC8_K8S_META_NAMESPACE, entry.getNamespace());
+                    newCfg.put(FABRIC8_K8S_META_CONTENT_HASH, entry.getContentHash());
                 }
 
-                if (merge && configAdmCfg != null) {
-                    for(Map.Entry<String, Object> entry : configMapCfg.entrySet()) {
-                        // Do not override ConfigAdmin meta data
-                        if (!CM_META_KEYS.contains(entry.getKey())) {
-                            configAdmCfg.put(entry.getKey(), entry.getValue());
-                        }
-                    }
-                    configMapCfg = configAdmCfg;
+                update(config, newCfg);
+                if (newCfg.containsKey(FABRIC8_PID)) {
+                    configurations.put(pid, config);
                 }
-                
-                config.update(configMapCfg);
             } else {
                 LOGGER.debug("Ignoring configuration pid={} (no changes)", config.getPid());
             }
+            applied.put(pid, configMapCfg);
         } catch (Exception e) {
             LOGGER.warn("", e);
         }
     }
 
-    private void deleteConfig(ConfigMap map) {
-        String pid = map.getMetadata().getLabels().get(pidLabel);
+    /**
+     * Uses {@link Configuration#updateIfDifferent(Dictionary)} if supported by Config Admin (since 1.6)
+     */
+    private void update(Configuration config, Hashtable<String, Object> properties) throws IOException {
+        try {
+            if (!config.updateIfDifferent(properties)) {
+                LOGGER.debug("Configuration pid={} not updated (no changes)", config.getPid());
+            }
+        } catch (AbstractMethodError | NoSuchMethodError e) {
+            config.update(properties);
+        }
+    }
+
+    private void deleteConfig(ConfigMapEntry entry) {
+        String pid = entry.getPid();
         String[] p = parsePid(pid);
 
         try {
-            Map<String, String> configMapData = map.getData();
-            Configuration config = getConfiguration(configAdmin.get(), pid, p[0], p[1]);
-
-            if (configMapData != null) {
-                boolean merge = configMapData.containsKey(FABRIC8_CONFIG_MERGE)
-                    ? Boolean.valueOf(configMapData.get(FABRIC8_CONFIG_MERGE))
-                    : configMerge;
+            if (entry.getProperties() != null) {
+                boolean merge = entry.getMerge() != null ? entry.getMerge() : configMerge;
 
                 if (!merge) {
+                    Configuration config = getConfiguration(configAdmin.get(), pid, p[0], p[1]);
                     LOGGER.debug("Delete configuration {}", config.getPid());
                     config.delete();
+                    configurations.removePid(config.getPid());
+                    applied.remove(pid);
                 }
             }
         } catch (Exception e) {
@@ -340,6 +445,21 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
     // Helpers
     // ***********************
 
+    private static Map<String, Set<String>> parseFilters(String filterList) {
+        Map<String, Set<String>> filters = new HashMap<>();
+        for (String filter : filterList.split(",")) {
+            String[] kv = filter.split("=");
+            if (kv.length == 2) {
+                Set<String> orConditions = new HashSet<>();
+                for (String orCondition : kv[1].split(";")) {
+                    orConditions.add(orCondition.trim());
+                }
+                filters.put(kv[0].trim(), orConditions);
+            }
+        }
+        return filters;
+    }
+
     private String[] parsePid(String pid) {
         String factoryPid = null;
 
@@ -352,42 +472,28 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
         return new String[] { pid, factoryPid };
     }
 
-    private ConfigMapList getConfigMapList() {
-        KubernetesClient client = kubernetesClient.get();
+    private FilterWatchListDeletable<ConfigMap, ConfigMapList, Boolean, Watch, Watcher<ConfigMap>> selectConfigMaps(
+            String namespace, Map<String, Set<String>> filters) {
 
-        if( client != null ) {
-            FilterWatchListDeletable<ConfigMap, ConfigMapList, Boolean, Watch, Watcher<ConfigMap>> configMapsSelector = client.configMaps().withLabel(pidLabel);
-            for( String key : filters.keySet() ){
-                configMapsSelector.withLabelIn(key, filters.get(key).toArray(new String[filters.get(key).size()]));
-            }
-            return configMapsSelector.list();
-        } else {
-            return null;
+        KubernetesClient client = watchClient;
+        if (client == null) {
+            throw new IllegalStateException("KubernetesClient not set");
         }
-    }
 
-    private void watchConfigMapList() {
-        if (configWatch) {
-            KubernetesClient client = kubernetesClient.get();
-
-            if (client != null) {
-                FilterWatchListDeletable<ConfigMap, ConfigMapList, Boolean, Watch, Watcher<ConfigMap>> configMapsSelector = client.configMaps().withLabel(pidLabel);
-                for( String key : filters.keySet() ){
-                    configMapsSelector.withLabelIn(key, filters.get(key).toArray(new String[filters.get(key).size()]));
-                }
-                watch = configMapsSelector.watch(this);
-            } else {
-                throw new RuntimeException("KubernetesClient not set");
-            }
+        FilterWatchListDeletable<ConfigMap, ConfigMapList, Boolean, Watch, Watcher<ConfigMap>> configMapsSelector = namespace != null
+            ? client.configMaps().inNamespace(namespace).withLabel(pidLabel)
+            : client.configMaps().withLabel(pidLabel);
+        for( String key : filters.keySet() ){
+            configMapsSelector.withLabelIn(key, filters.get(key).toArray(new String[filters.get(key).size()]));
         }
+        return configMapsSelector;
     }
 
     private Configuration getConfiguration(ConfigurationAdmin configAdmin, String fabric8pid, String pid, String factoryPid) throws Exception {
-        String filter = "(" + FABRIC8_PID + "=" + fabric8pid + ")";
-        Configuration[] oldConfiguration = configAdmin.listConfigurations(filter);
+        Configuration oldConfiguration = configurations.get(fabric8pid);
 
-        if (oldConfiguration != null && oldConfiguration.length > 0) {
-            return oldConfiguration[0];
+        if (oldConfiguration != null) {
+            return oldConfiguration;
         } else {
             Configuration newConfiguration;
             if (factoryPid != null) {
@@ -406,28 +512,4 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
             return newConfiguration;
         }
     }
-
-    private boolean shouldUpdate(Hashtable<String, Object> configAdmCfg, Hashtable<String, Object> configMapCfg) {
-        if (configAdmCfg == null) {
-            return true;
-        }
-
-        for(Map.Entry<String, Object> entry : configMapCfg.entrySet()) {
-            // Do not compare meta data
-            if (FABRIC8_META_KEYS.contains(entry.getKey())) {
-                continue;
-            }
-
-            Object value = configAdmCfg.get(entry.getKey());
-            if (value == null) {
-                return true;
-            }
-            if (!value.equals(entry.getValue())) {
-                return true;
-            }
-        }
-
-        return false;
-    }
 }
-
@@ -25,10 +25,23 @@ import org.osgi.service.cm.ConfigurationAdmin;
 final class KubernetesConstants {
     public static final String FABRIC8_CONFIG_PLUGIN_ENABLED = "fabric8.config.plugin.enabled";
     public static final Boolean FABRIC8_CONFIG_PLUGIN_ENABLED_DEFAULT = false;
+    public static final String FABRIC8_CONFIG_PLUGIN_REFRESH = "fabric8.config.plugin.refresh";
+    public static final Boolean FABRIC8_CONFIG_PLUGIN_REFRESH_DEFAULT = false;
     public static final String FABRIC8_CM_BRIDGE_ENABLED = "fabric8.cm.bridge.enabled";
     public static final Boolean FABRIC8_CM_BRIDGE_ENABLED_DEFAULT = true;
     public static final String FABRIC8_CONFIG_WATCH = "fabric8.config.watch";
     public static final Boolean FABRIC8_CONFIG_WATCH_DEFAULT = true;
+    public static final String FABRIC8_CONFIG_WATCH_DEBOUNCE = "fabric8.config.watch.debounce";
+    public static final int FABRIC8_CONFIG_WATCH_DEBOUNCE_DEFAULT = 250;
+    public static final String FABRIC8_CONFIG_WATCH_THREADS = "fabric8.config.watch.threads";
+    public static final int FABRIC8_CONFIG_WATCH_THREADS_DEFAULT = 4;
+    public static final String FABRIC8_CONFIG_WATCH_RESYNC = "fabric8.config.watch.resync";
+    public static final int FABRIC8_CONFIG_WATCH_RESYNC_DEFAULT = 300000;
+    public static final String FABRIC8_CONFIG_WATCH_BACKOFF_MAX = "fabric8.config.watch.backoff.max";
+    public static final int FABRIC8_CONFIG_WATCH_BACKOFF_MAX_DEFAULT = 60000;
+    public static final String FABRIC8_CONFIG_NAMESPACES = "fabric8.config.namespaces";
+    public static final String FABRIC8_CONFIG_LIST_LIMIT = "fabric8.config.list.limit";
+    public static final int FABRIC8_CONFIG_LIST_LIMIT_DEFAULT = 500;
     public static final String FABRIC8_CONFIG_MERGE = "fabric8.config.merge";
     public static final Boolean FABRIC8_CONFIG_MERGE_DEFAULT = false;
     public static final String FABRIC8_CONFIG_META = "fabric8.config.meta";
@@ -41,6 +54,7 @@ final class KubernetesConstants {
     public static final String FABRIC8_K8S_META_RESOURCE_VERSION = "fabric8.k8s.meta.resourceVersion";
     public static final String FABRIC8_K8S_META_NAME = "fabric8.k8s.meta.name";
     public static final String FABRIC8_K8S_META_NAMESPACE = "fabric8.k8s.meta.namespace";
+    public static final String FABRIC8_K8S_META_CONTENT_HASH = "fabric8.k8s.meta.contentHash";
 
     public static final List<String> FABRIC8_META_KEYS = Collections.unmodifiableList(
         Arrays.asList(
@@ -53,6 +67,7 @@ final class KubernetesConstants {
             FABRIC8_K8S_META_RESOURCE_VERSION,
             FABRIC8_K8S_META_NAME,
             FABRIC8_K8S_META_NAMESPACE,
+            FABRIC8_K8S_META_CONTENT_HASH,
             "felix.fileinstall.filename"
         )
     );
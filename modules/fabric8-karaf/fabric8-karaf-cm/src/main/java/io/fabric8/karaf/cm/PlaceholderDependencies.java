@@ -0,0 +1,117 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.cm;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records which configurations (PIDs) use which placeholder expressions, so when values of some placeholders
+ * change, only the configurations using them are resolved again.
+ */
+final class PlaceholderDependencies {
+    // function name -> expression -> PIDs
+    private final Map<String, Map<String, Set<String>>> byFunction;
+    // PID -> expressions
+    private final Map<String, Set<String>> byPid;
+
+    PlaceholderDependencies() {
+        this.byFunction = new HashMap<>();
+        this.byPid = new HashMap<>();
+    }
+
+    /**
+     * Replaces the expressions used by given configuration
+     */
+    synchronized void record(String pid, Set<String> expressions) {
+        Set<String> previous = byPid.get(pid);
+        if (expressions.equals(previous)) {
+            return;
+        }
+        remove(pid);
+        if (expressions.isEmpty()) {
+            return;
+        }
+
+        byPid.put(pid, new HashSet<>(expressions));
+        for (String expression : expressions) {
+            for (String function : functions(expression)) {
+                byFunction.computeIfAbsent(function, f -> new HashMap<>())
+                    .computeIfAbsent(expression, e -> new HashSet<>())
+                    .add(pid);
+            }
+        }
+    }
+
+    synchronized void remove(String pid) {
+        Set<String> expressions = byPid.remove(pid);
+        if (expressions == null) {
+            return;
+        }
+        for (String expression : expressions) {
+            for (String function : functions(expression)) {
+                Map<String, Set<String>> index = byFunction.get(function);
+                if (index == null) {
+                    continue;
+                }
+                Set<String> pids = index.get(expression);
+                if (pids != null && pids.remove(pid) && pids.isEmpty()) {
+                    index.remove(expression);
+                }
+                if (index.isEmpty()) {
+                    byFunction.remove(function);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns PIDs of the configurations using the function with remainder starting with the given prefix
+     */
+    synchronized Set<String> find(String function, String remainderPrefix) {
+        Map<String, Set<String>> index = byFunction.get(function);
+        if (index == null) {
+            return Collections.emptySet();
+        }
+        Set<String> result = new HashSet<>();
+        for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+            String expression = entry.getKey();
+            if (expression.startsWith(remainderPrefix, expression.indexOf(':') + 1)) {
+                result.addAll(entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> functions(String expression) {
+        int colon = expression.indexOf(':');
+        if (colon < 0) {
+            return Collections.emptySet();
+        }
+        Set<String> functions = new HashSet<>();
+        int start = 0;
+        for (int i = 0; i <= colon; i++) {
+            if (i == colon || expression.charAt(i) == '+') {
+                functions.add(expression.substring(start, i));
+                start = i + 1;
+            }
+        }
+        return functions;
+    }
+}
@@ -15,9 +15,14 @@
  */
 package io.fabric8.karaf.cm;
 
+import java.io.IOException;
 import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
+import io.fabric8.karaf.core.properties.PlaceholderChangeListener;
 import io.fabric8.karaf.core.properties.PlaceholderResolver;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -25,16 +30,25 @@ import org.apache.felix.scr.annotations.ConfigurationPolicy;
 import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.References;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
+import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
+import org.osgi.service.cm.ConfigurationListener;
 import org.osgi.service.cm.ConfigurationPlugin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_PLUGIN_ENABLED;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_PLUGIN_ENABLED_DEFAULT;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_PLUGIN_REFRESH;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_PLUGIN_REFRESH_DEFAULT;
 import static io.fabric8.kubernetes.client.utils.Utils.getSystemPropertyOrEnvVar;
 
 @Component(
@@ -42,25 +56,38 @@ import static io.fabric8.kubernetes.client.utils.Utils.getSystemPropertyOrEnvVar
     policy = ConfigurationPolicy.IGNORE,
     createPid = false
 )
-@Reference(
-    name = "resolver",
-    cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE,
-    policy = ReferencePolicy.DYNAMIC,
-    referenceInterface = PlaceholderResolver.class
-)
+@References({
+    @Reference(
+        name = "resolver",
+        cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE,
+        policy = ReferencePolicy.DYNAMIC,
+        referenceInterface = PlaceholderResolver.class),
+    @Reference(
+        name = "configAdmin",
+        cardinality = ReferenceCardinality.OPTIONAL_UNARY,
+        policy = ReferencePolicy.DYNAMIC,
+        referenceInterface = ConfigurationAdmin.class)
+})
 @Properties({
     @Property(name = ConfigurationPlugin.CM_RANKING, value = "10", classValue = Integer.class)
 })
-@Service(ConfigurationPlugin.class)
-public class PlaceholderResolverConfigurationPlugin implements ConfigurationPlugin {
+@Service({ ConfigurationPlugin.class, ConfigurationListener.class, PlaceholderChangeListener.class })
+public class PlaceholderResolverConfigurationPlugin
+    implements ConfigurationPlugin, ConfigurationListener, PlaceholderChangeListener {
     private static final Logger LOGGER = LoggerFactory.getLogger(PlaceholderResolverConfigurationPlugin.class);
 
     private final AtomicReference<PlaceholderResolver> resolver;
+    private final AtomicReference<ConfigurationAdmin> configAdmin;
+    private final PlaceholderDependencies dependencies;
     private boolean enabled;
+    private boolean refresh;
 
     public PlaceholderResolverConfigurationPlugin() {
         this.resolver = new AtomicReference<>();
+        this.configAdmin = new AtomicReference<>();
+        this.dependencies = new PlaceholderDependencies();
         this.enabled = FABRIC8_CONFIG_PLUGIN_ENABLED_DEFAULT;
+        this.refresh = FABRIC8_CONFIG_PLUGIN_REFRESH_DEFAULT;
     }
 
     // ***********************
@@ -70,7 +97,9 @@ public class PlaceholderResolverConfigurationPlugin implements ConfigurationPlug
     @Activate
     void activate() {
         enabled = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_PLUGIN_ENABLED, enabled);
+        refresh = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_PLUGIN_REFRESH, refresh);
         LOGGER.debug("Configuration update is {}", enabled ? "ENABLED" : "DISABLED");
+        LOGGER.debug("Configuration refresh is {}", refresh ? "ENABLED" : "DISABLED");
     }
 
     // ****************************
@@ -85,6 +114,14 @@ public class PlaceholderResolverConfigurationPlugin implements ConfigurationPlug
         this.resolver.compareAndSet(resolver, null);
     }
 
+    protected void bindConfigAdmin(ConfigurationAdmin configAdmin) {
+        this.configAdmin.set(configAdmin);
+    }
+
+    protected void unbindConfigAdmin(ConfigurationAdmin configAdmin) {
+        this.configAdmin.compareAndSet(configAdmin, null);
+    }
+
     // ***********************
     // ConfigurationPlugin
     // ***********************
@@ -93,7 +130,74 @@ public class PlaceholderResolverConfigurationPlugin implements ConfigurationPlug
     public void modifyConfiguration(ServiceReference<?> reference, Dictionary<String, Object> dictionary) {
         PlaceholderResolver res = resolver.get();
         if (enabled && res != null) {
+            if (refresh) {
+                recordDependencies(res, dictionary);
+            }
             res.replaceAll(dictionary);
         }
     }
+
+    // ***********************
+    // PlaceholderChangeListener
+    // ***********************
+
+    /**
+     * Updates (with unchanged properties) the configurations which use affected placeholders, so they're
+     * passed through this plugin again.
+     */
+    @Override
+    public void placeholdersChanged(String function, String remainderPrefix) {
+        ConfigurationAdmin ca = configAdmin.get();
+        if (!enabled || !refresh || ca == null) {
+            return;
+        }
+
+        for (String pid : dependencies.find(function, remainderPrefix)) {
+            try {
+                Configuration[] configurations = ca.listConfigurations(ConfigurationIndex.pidFilter(pid));
+                if (configurations != null && configurations.length > 0) {
+                    Dictionary<String, Object> properties = configurations[0].getProperties();
+                    if (properties != null) {
+                        LOGGER.debug("Refreshing configuration {} using {}:{}", pid, function, remainderPrefix);
+                        configurations[0].update(properties);
+                    }
+                } else {
+                    dependencies.remove(pid);
+                }
+            } catch (IOException | InvalidSyntaxException e) {
+                LOGGER.warn("Error refreshing configuration {}", pid, e);
+            }
+        }
+    }
+
+    // ***********************
+    // ConfigurationListener
+    // ***********************
+
+    @Override
+    public void configurationEvent(ConfigurationEvent event) {
+        if (event.getType() == ConfigurationEvent.CM_DELETED) {
+            dependencies.remove(event.getPid());
+        }
+    }
+
+    // ***********************
+    // Helpers
+    // ***********************
+
+    private void recordDependencies(PlaceholderResolver res, Dictionary<String, Object> dictionary) {
+        Object pid = dictionary.get(Constants.SERVICE_PID);
+        if (!(pid instanceof String)) {
+            return;
+        }
+        Set<String> expressions = new HashSet<>();
+        Enumeration<String> keys = dictionary.keys();
+        while (keys.hasMoreElements()) {
+            Object value = dictionary.get(keys.nextElement());
+            if (value instanceof String) {
+                expressions.addAll(res.getPlaceholders((String) value));
+            }
+        }
+        dependencies.record((String) pid, expressions);
+    }
 }
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.cm;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConfigMapEntryTest {
+
+    @Test
+    public void testParsesPidCfg() {
+        ConfigMapEntry entry = ConfigMapEntry.of(configMap("1", "a=1\nb=2", "x", "fabric8.config.merge", "true"), "karaf.pid");
+
+        Assert.assertEquals("pid1", entry.getPid());
+        Assert.assertEquals("1", entry.getProperties().get("a"));
+        Assert.assertEquals("2", entry.getProperties().get("b"));
+        Assert.assertFalse(entry.getProperties().containsKey("other"));
+        Assert.assertTrue(entry.getMerge());
+        Assert.assertNull(entry.getMeta());
+    }
+
+    @Test
+    public void testContentHashIgnoresUnusedData() {
+        ConfigMapEntry entry = ConfigMapEntry.of(configMap("1", "a=1", "x"), "karaf.pid");
+        ConfigMapEntry unused = ConfigMapEntry.of(configMap("2", "a=1", "y"), "karaf.pid", entry);
+        ConfigMapEntry changed = ConfigMapEntry.of(configMap("3", "a=2", "y"), "karaf.pid", unused);
+        ConfigMapEntry merge = ConfigMapEntry.of(configMap("4", "a=2", "y", "fabric8.config.merge", "true"), "karaf.pid", changed);
+
+        Assert.assertTrue(entry.isSameContent(unused));
+        Assert.assertFalse(entry.isSameVersion(unused));
+        // the configuration of the same content isn't parsed again
+        Assert.assertSame(entry.getProperties(), unused.getProperties());
+
+        Assert.assertFalse(unused.isSameContent(changed));
+        Assert.assertEquals("2", changed.getProperties().get("a"));
+        Assert.assertFalse(changed.isSameContent(merge));
+    }
+
+    @Test
+    public void testContentHashOfPlainData() {
+        ConfigMap map = new ConfigMapBuilder()
+            .withNewMetadata().withName("cm").withResourceVersion("1").addToLabels("karaf.pid", "pid1").endMetadata()
+            .addToData("a", "1")
+            .build();
+        ConfigMapEntry entry = ConfigMapEntry.of(map, "karaf.pid");
+
+        map.getData().put("b", "2");
+        map.getMetadata().setResourceVersion("2");
+        ConfigMapEntry changed = ConfigMapEntry.of(map, "karaf.pid", entry);
+
+        Assert.assertFalse(entry.isSameContent(changed));
+        Assert.assertEquals("2", changed.getProperties().get("b"));
+    }
+
+    private static ConfigMap configMap(String resourceVersion, String cfg, String other, String... data) {
+        ConfigMapBuilder builder = new ConfigMapBuilder()
+            .withNewMetadata()
+                .withName("cm")
+                .withNamespace("test")
+                .withResourceVersion(resourceVersion)
+                .addToLabels("karaf.pid", "pid1")
+            .endMetadata()
+            .addToData("pid1.cfg", cfg)
+            .addToData("other", other);
+        for (int i = 0; i < data.length; i += 2) {
+            builder.addToData(data[i], data[i + 1]);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.cm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.client.Watcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConfigMapEventDispatcherTest {
+
+    @Test
+    public void testCoalescesEventsOfSamePid() throws Exception {
+        List<String> applied = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(2);
+        ConfigMapEventDispatcher dispatcher = new ConfigMapEventDispatcher(200, 2, (action, entry) -> {
+            applied.add(entry.getName() + "@" + entry.getResourceVersion());
+            latch.countDown();
+        });
+
+        try {
+            dispatcher.dispatch("pid1", Watcher.Action.ADDED, configMap("a", "1"));
+            dispatcher.dispatch("pid1", Watcher.Action.MODIFIED, configMap("a", "3"));
+            // out of order event is ignored
+            dispatcher.dispatch("pid1", Watcher.Action.MODIFIED, configMap("a", "2"));
+            dispatcher.dispatch("pid2", Watcher.Action.ADDED, configMap("b", "4"));
+
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+            Thread.sleep(300);
+        } finally {
+            dispatcher.close();
+        }
+
+        Assert.assertEquals(2, applied.size());
+        Assert.assertTrue(applied.contains("a@3"));
+        Assert.assertTrue(applied.contains("b@4"));
+    }
+
+    @Test
+    public void testAppliesDifferentPidsConcurrently() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        ConfigMapEventDispatcher dispatcher = new ConfigMapEventDispatcher(0, 2, (action, entry) -> {
+            started.countDown();
+            try {
+                // both PIDs have to be in progress at the same time to get past this
+                started.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        try {
+            dispatcher.dispatch("pid1", Watcher.Action.ADDED, configMap("a", "1"));
+            dispatcher.dispatch("pid2", Watcher.Action.ADDED, configMap("b", "1"));
+
+            Assert.assertTrue(started.await(2, TimeUnit.SECONDS));
+        } finally {
+            dispatcher.close();
+        }
+    }
+
+    private static ConfigMapEntry configMap(String name, String resourceVersion) {
+        ConfigMap map = new ConfigMapBuilder()
+            .withNewMetadata().withName(name).withResourceVersion(resourceVersion).endMetadata()
+            .build();
+        return ConfigMapEntry.of(map, "karaf.pid");
+    }
+}
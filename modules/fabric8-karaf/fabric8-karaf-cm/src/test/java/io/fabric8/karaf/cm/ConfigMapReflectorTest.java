@@ -0,0 +1,281 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.cm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.ConfigMapListBuilder;
+import io.fabric8.kubernetes.api.model.StatusBuilder;
+import io.fabric8.kubernetes.api.model.WatchEvent;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConfigMapReflectorTest {
+    private static final String PATH = "/api/v1/namespaces/test/configmaps?labelSelector=karaf.pid";
+    private static final String LIST_PATH = "/api/v1/namespaces/test/configmaps?limit=10&labelSelector=karaf.pid";
+    private static final String NEXT_PATH = "/api/v1/namespaces/test/configmaps?continue=next&limit=10&labelSelector=karaf.pid";
+
+    private KubernetesMockServer server;
+    private KubernetesClient client;
+    private ScheduledExecutorService executor;
+    private ConfigMapCache cache;
+    private ConfigMapReflector reflector;
+    private List<String> events;
+
+    @Before
+    public void setUp() {
+        server = new KubernetesMockServer(false);
+        server.init();
+        client = ConfigMapReflector.createWatchClient(server.createClient());
+        executor = Executors.newSingleThreadScheduledExecutor();
+        cache = new ConfigMapCache();
+        events = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @After
+    public void tearDown() {
+        if (reflector != null) {
+            reflector.close();
+        }
+        executor.shutdownNow();
+        client.close();
+        server.destroy();
+    }
+
+    @Test
+    public void testRelistOnGone() throws Exception {
+        server.expect().get().withPath(LIST_PATH)
+            .andReturn(200, new ConfigMapListBuilder()
+                .withNewMetadata().withResourceVersion("2").endMetadata()
+                .withItems(configMap("cm1", "1"), configMap("cm2", "2"))
+                .build())
+            .once();
+        server.expect().get().withPath(PATH + "&resourceVersion=2&watch=true")
+            .andUpgradeToWebSocket().open()
+            .waitFor(100).andEmit(new WatchEvent(new StatusBuilder().withCode(410).withMessage("too old").build(), "ERROR"))
+            .done().once();
+        server.expect().get().withPath(LIST_PATH)
+            .andReturn(200, new ConfigMapListBuilder()
+                .withNewMetadata().withResourceVersion("5").endMetadata()
+                .withItems(configMap("cm1", "3"))
+                .build())
+            .once();
+        server.expect().get().withPath(PATH + "&resourceVersion=5&watch=true")
+            .andUpgradeToWebSocket().open()
+            .waitFor(100).andEmit(new WatchEvent(configMap("cm3", "6"), "ADDED"))
+            .done().always();
+
+        reflector = createReflector("test", 0);
+        Assert.assertEquals(2, reflector.list().size());
+        reflector.watch();
+
+        awaitEvents(3);
+        Assert.assertEquals(3, events.size());
+        Assert.assertTrue(events.contains("MODIFIED cm1@3"));
+        Assert.assertTrue(events.contains("DELETED cm2@2"));
+        Assert.assertEquals("ADDED cm3@6", events.get(2));
+    }
+
+    @Test
+    public void testResumeOnClose() throws Exception {
+        server.expect().get().withPath(LIST_PATH)
+            .andReturn(200, new ConfigMapListBuilder()
+                .withNewMetadata().withResourceVersion("2").endMetadata()
+                .withItems(configMap("cm1", "1"))
+                .build())
+            .once();
+        // listing again would report cm1 as modified
+        server.expect().get().withPath(LIST_PATH)
+            .andReturn(200, new ConfigMapListBuilder()
+                .withNewMetadata().withResourceVersion("4").endMetadata()
+                .withItems(configMap("cm1", "4"))
+                .build())
+            .always();
+        // quiet namespace - the connection is closed after a while without any event passed to the watcher
+        server.expect().get().withPath(PATH + "&resourceVersion=2&watch=true")
+            .andUpgradeToWebSocket().open()
+            .waitFor(500).andEmit(new WatchEvent(new StatusBuilder().withCode(500).withMessage("ignored").build(), "ERROR"))
+            .done().once();
+        server.expect().get().withPath(PATH + "&resourceVersion=2&watch=true")
+            .andUpgradeToWebSocket().open()
+            .waitFor(100).andEmit(new WatchEvent(configMap("cm3", "3"), "ADDED"))
+            .done().once();
+        server.expect().get().withPath(PATH + "&resourceVersion=3&watch=true")
+            .andUpgradeToWebSocket().open()
+            .waitFor(10000).andEmit(new WatchEvent(configMap("cm3", "5"), "MODIFIED"))
+            .done().always();
+
+        reflector = createReflector("test", 0);
+        reflector.setGoneWindow(200);
+        reflector.list();
+        reflector.watch();
+
+        awaitEvents(1);
+        Thread.sleep(500);
+        Assert.assertEquals(Collections.singletonList("ADDED cm3@3"), events);
+    }
+
+    @Test
+    public void testResync() throws Exception {
+        server.expect().get().withPath(LIST_PATH)
+            .andReturn(200, new ConfigMapListBuilder()
+                .withNewMetadata().withResourceVersion("1").endMetadata()
+                .withItems(configMap("cm1", "1"))
+                .build())
+            .once();
+        server.expect().get().withPath(LIST_PATH)
+            .andReturn(200, new ConfigMapListBuilder()
+                .withNewMetadata().withResourceVersion("2").endMetadata()
+                .withItems(configMap("cm2", "2"))
+                .build())
+            .always();
+        server.expect().get().withPath(PATH + "&resourceVersion=1&watch=true")
+            .andUpgradeToWebSocket().open().done().always();
+
+        reflector = createReflector("test", 200);
+        reflector.list();
+        reflector.watch();
+
+        awaitEvents(2);
+        Assert.assertTrue(events.contains("ADDED cm2@2"));
+        Assert.assertTrue(events.contains("DELETED cm1@1"));
+    }
+
+    @Test
+    public void testListPages() throws Exception {
+        server.expect().get().withPath(LIST_PATH)
+            .andReturn(200, new ConfigMapListBuilder()
+                .withNewMetadata().withResourceVersion("3").withContinue("next").endMetadata()
+                .withItems(configMap("cm1", "1"))
+                .build())
+            .once();
+        server.expect().get().withPath(NEXT_PATH)
+            .andReturn(200, new ConfigMapListBuilder()
+                .withNewMetadata().withResourceVersion("4").endMetadata()
+                .withItems(configMap("cm2", "2"))
+                .build())
+            .once();
+        server.expect().get().withPath(PATH + "&resourceVersion=3&watch=true")
+            .andUpgradeToWebSocket().open()
+            .waitFor(100).andEmit(new WatchEvent(configMap("cm3", "5"), "ADDED"))
+            .done().always();
+
+        reflector = createReflector("test", 0);
+        Assert.assertEquals(2, reflector.list().size());
+        Assert.assertEquals(2, cache.size());
+
+        // the watch continues from the resourceVersion of the first page
+        reflector.watch();
+        awaitEvents(1);
+        Assert.assertEquals(Collections.singletonList("ADDED cm3@5"), events);
+    }
+
+    @Test
+    public void testSharedCache() throws Exception {
+        server.expect().get().withPath(LIST_PATH)
+            .andReturn(200, new ConfigMapListBuilder()
+                .withNewMetadata().withResourceVersion("1").endMetadata()
+                .withItems(configMap("cm1", "1"))
+                .build())
+            .times(2);
+
+        ConfigMapReflector other = createReflector("other", 0);
+        reflector = createReflector("test", 0);
+        try {
+            // the ConfigMap seen by both scopes is returned once
+            Assert.assertEquals(1, other.list().size());
+            Assert.assertEquals(0, reflector.list().size());
+            Assert.assertEquals(1, cache.size());
+
+            // and removed once no scope sees it anymore
+            Assert.assertNull(cache.remove("other", "test/cm1"));
+            Assert.assertNotNull(cache.remove("test", "test/cm1"));
+            Assert.assertEquals(0, cache.size());
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void testIgnoresUnchangedContent() throws Exception {
+        server.expect().get().withPath(LIST_PATH)
+            .andReturn(200, new ConfigMapListBuilder()
+                .withNewMetadata().withResourceVersion("1").endMetadata()
+                .withItems(configMap("cm1", "1", "a"))
+                .build())
+            .once();
+        server.expect().get().withPath(PATH + "&resourceVersion=1&watch=true")
+            .andUpgradeToWebSocket().open()
+            // i.e. only the annotations have been changed
+            .waitFor(100).andEmit(new WatchEvent(configMap("cm1", "2", "a"), "MODIFIED"))
+            .waitFor(100).andEmit(new WatchEvent(configMap("cm1", "3", "b"), "MODIFIED"))
+            .done().always();
+
+        reflector = createReflector("test", 0);
+        reflector.list();
+        reflector.watch();
+
+        awaitEvents(1);
+        Assert.assertEquals(Collections.singletonList("MODIFIED cm1@3"), events);
+    }
+
+    private ConfigMapReflector createReflector(String scope, long resync) {
+        return new ConfigMapReflector(
+            scope,
+            () -> client.configMaps().withLabel("karaf.pid"),
+            cache,
+            "karaf.pid",
+            (action, entry) -> events.add(action + " " + entry.getName() + "@" + entry.getResourceVersion()),
+            10,
+            resync,
+            1000,
+            executor);
+    }
+
+    private void awaitEvents(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (events.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    private static ConfigMap configMap(String name, String resourceVersion) {
+        return configMap(name, resourceVersion, "value@" + resourceVersion);
+    }
+
+    private static ConfigMap configMap(String name, String resourceVersion, String value) {
+        return new ConfigMapBuilder()
+            .withNewMetadata()
+                .withName(name)
+                .withNamespace("test")
+                .withResourceVersion(resourceVersion)
+                .addToLabels("karaf.pid", name)
+            .endMetadata()
+            .addToData("key", value)
+            .build();
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.cm;
+
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConfigurationDiffTest {
+
+    @Test
+    public void testNewConfiguration() {
+        Map<String, Object> current = properties("a", "1");
+        Assert.assertEquals(current, ConfigurationDiff.compute(null, null, current, false));
+    }
+
+    @Test
+    public void testNoChangesIgnoringMetaAndTypes() {
+        Hashtable<String, Object> configAdmin = new Hashtable<>();
+        configAdmin.put("service.pid", "pid1");
+        configAdmin.put("fabric8.k8s.meta.resourceVersion", 10L);
+        configAdmin.put("port", 8080);
+        configAdmin.put("hosts", new String[] { "h1", "h2" });
+
+        Map<String, Object> current = properties("port", "8080");
+        current.put("hosts", new String[] { "h1", "h2" });
+
+        Assert.assertNull(ConfigurationDiff.compute(configAdmin, null, current, false));
+        Assert.assertNull(ConfigurationDiff.compute(configAdmin, current, current, true));
+    }
+
+    @Test
+    public void testRemovalReplace() {
+        Hashtable<String, Object> configAdmin = new Hashtable<>(properties("a", "1"));
+        configAdmin.put("b", "2");
+
+        Hashtable<String, Object> target = ConfigurationDiff.compute(configAdmin, null, properties("a", "1"), false);
+        Assert.assertEquals(properties("a", "1"), target);
+    }
+
+    @Test
+    public void testRemovalMerge() {
+        Hashtable<String, Object> configAdmin = new Hashtable<>(properties("a", "1"));
+        configAdmin.put("b", "2");
+        configAdmin.put("local", "3");
+
+        Map<String, Object> previous = properties("a", "1");
+        previous.put("b", "2");
+
+        // b has been removed from the ConfigMap, local has never been there
+        Hashtable<String, Object> target = ConfigurationDiff.compute(configAdmin, previous, properties("a", "1"), true);
+        Map<String, Object> expected = properties("a", "1");
+        expected.put("local", "3");
+        Assert.assertEquals(expected, target);
+
+        // without previous state removals can't be detected
+        Assert.assertNull(ConfigurationDiff.compute(configAdmin, null, properties("a", "1"), true));
+    }
+
+    @Test
+    public void testChangeMerge() {
+        Hashtable<String, Object> configAdmin = new Hashtable<>(properties("a", "1"));
+        configAdmin.put("service.pid", "pid1");
+
+        Map<String, Object> current = properties("a", "2");
+        current.put("service.pid", "other");
+
+        Hashtable<String, Object> target = ConfigurationDiff.compute(configAdmin, null, current, true);
+        Assert.assertEquals("2", target.get("a"));
+        Assert.assertEquals("pid1", target.get("service.pid"));
+    }
+
+    private static Map<String, Object> properties(String key, Object value) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(key, value);
+        return properties;
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.cm;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ConfigurationIndexTest {
+
+    @Test
+    public void testLoadAndGet() throws Exception {
+        Configuration c1 = configuration("pid1", "fabric8-pid1");
+        Configuration c2 = configuration("pid2", null);
+        ConfigurationAdmin configAdmin = mock(ConfigurationAdmin.class);
+        when(configAdmin.listConfigurations("(fabric8.pid=*)")).thenReturn(new Configuration[] { c1, c2 });
+
+        ConfigurationIndex index = new ConfigurationIndex();
+        index.load(configAdmin);
+
+        Assert.assertSame(c1, index.get("fabric8-pid1"));
+
+        index.removePid("pid1");
+        Assert.assertNull(index.get("fabric8-pid1"));
+    }
+
+    @Test
+    public void testGetDropsChangedAndDeleted() {
+        Configuration changed = configuration("pid1", "fabric8-pid1");
+        Configuration deleted = configuration("pid2", "fabric8-pid2");
+
+        ConfigurationIndex index = new ConfigurationIndex();
+        index.put("fabric8-pid1", changed);
+        index.put("fabric8-pid2", deleted);
+
+        when(changed.getProperties()).thenReturn(new Hashtable<>());
+        when(deleted.getProperties()).thenThrow(new IllegalStateException("deleted"));
+
+        Assert.assertNull(index.get("fabric8-pid1"));
+        Assert.assertNull(index.get("fabric8-pid2"));
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        Configuration c1 = configuration("pid1", "fabric8-pid1");
+        ConfigurationAdmin configAdmin = mock(ConfigurationAdmin.class);
+        when(configAdmin.listConfigurations("(service.pid=pid1)")).thenReturn(new Configuration[] { c1 });
+
+        ConfigurationIndex index = new ConfigurationIndex();
+        index.update(configAdmin, "pid1");
+        Assert.assertSame(c1, index.get("fabric8-pid1"));
+
+        // fabric8.pid changed by someone else
+        Configuration changed = configuration("pid1", "fabric8-pid2");
+        when(configAdmin.listConfigurations("(service.pid=pid1)")).thenReturn(new Configuration[] { changed });
+        index.update(configAdmin, "pid1");
+        Assert.assertSame(changed, index.get("fabric8-pid2"));
+        Dictionary<String, Object> changedProperties = changed.getProperties();
+        when(c1.getProperties()).thenReturn(changedProperties);
+        Assert.assertNull(index.get("fabric8-pid1"));
+
+        // fabric8.pid removed
+        Configuration removed = configuration("pid1", null);
+        when(configAdmin.listConfigurations("(service.pid=pid1)")).thenReturn(new Configuration[] { removed });
+        index.update(configAdmin, "pid1");
+        Assert.assertNull(index.get("fabric8-pid2"));
+
+        // configuration deleted meanwhile
+        index.put("fabric8-pid1", c1);
+        when(configAdmin.listConfigurations("(service.pid=pid1)")).thenReturn(null);
+        index.update(configAdmin, "pid1");
+        when(c1.getProperties()).thenReturn(properties("pid1", "fabric8-pid1"));
+        Assert.assertNull(index.get("fabric8-pid1"));
+    }
+
+    @Test
+    public void testPidFilter() {
+        Assert.assertEquals("(service.pid=org.example.pid)", ConfigurationIndex.pidFilter("org.example.pid"));
+        Assert.assertEquals("(service.pid=factory.pid-\\(1\\))", ConfigurationIndex.pidFilter("factory.pid-(1)"));
+        Assert.assertEquals("(service.pid=\\*)", ConfigurationIndex.pidFilter("*"));
+        Assert.assertEquals("(service.pid=a\\\\b)", ConfigurationIndex.pidFilter("a\\b"));
+    }
+
+    private static Configuration configuration(String pid, String fabric8pid) {
+        Hashtable<String, Object> properties = properties(pid, fabric8pid);
+
+        Configuration configuration = mock(Configuration.class);
+        when(configuration.getPid()).thenReturn(pid);
+        when(configuration.getProperties()).thenReturn(properties);
+        return configuration;
+    }
+
+    private static Hashtable<String, Object> properties(String pid, String fabric8pid) {
+        Hashtable<String, Object> properties = new Hashtable<>();
+        properties.put("service.pid", pid);
+        if (fabric8pid != null) {
+            properties.put("fabric8.pid", fabric8pid);
+        }
+        return properties;
+    }
+}
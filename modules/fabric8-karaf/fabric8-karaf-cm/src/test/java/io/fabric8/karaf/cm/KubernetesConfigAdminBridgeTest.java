@@ -15,14 +15,32 @@
  */
 package io.fabric8.karaf.cm;
 
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
 import io.fabric8.kubernetes.api.model.ConfigMapList;
+import io.fabric8.kubernetes.api.model.ConfigMapListBuilder;
 import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
 
 public class KubernetesConfigAdminBridgeTest {
     private static final Logger LOGGER = LoggerFactory.getLogger(KubernetesConfigAdminBridgeTest.class);
@@ -32,13 +50,18 @@ public class KubernetesConfigAdminBridgeTest {
 
     private ConfigMapList cmEmptyList = new ConfigMapList();
 
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
     @Test
     public void testAand(){
         System.setProperty("fabric8.pid.filters", "appName=A,database.name=my.oracle.datasource");
         KubernetesMockServer plainServer = new KubernetesMockServer(false);
 
         plainServer.expect().get().withPath("/api/v1/namespaces/test/configmaps?labelSelector=karaf.pid%2CappName%20in%20%28A%29%2Cdatabase.name%20in%20%28my.oracle.datasource%29&watch=true").andReturnChunked(200).always();
-        plainServer.expect().get().withPath("/api/v1/namespaces/test/configmaps?labelSelector=karaf.pid%2CappName%20in%20%28A%29%2Cdatabase.name%20in%20%28my.oracle.datasource%29").andReturn(200, cmEmptyList).always();
+        plainServer.expect().get().withPath("/api/v1/namespaces/test/configmaps?limit=500&labelSelector=karaf.pid%2CappName%20in%20%28A%29%2Cdatabase.name%20in%20%28my.oracle.datasource%29").andReturn(200, cmEmptyList).always();
 
         KubernetesConfigAdminBridge kcab = new KubernetesConfigAdminBridge();
         kcab.bindConfigAdmin( caService );
@@ -53,7 +76,7 @@ public class KubernetesConfigAdminBridgeTest {
         KubernetesMockServer plainServer = new KubernetesMockServer(false);
 
         plainServer.expect().get().withPath("/api/v1/namespaces/test/configmaps?labelSelector=karaf.pid%2CappName%20in%20%28A%2CB%29&watch=true").andReturnChunked(200).always();
-        plainServer.expect().get().withPath("/api/v1/namespaces/test/configmaps?labelSelector=karaf.pid%2CappName%20in%20%28A%2CB%29").andReturn(200, cmEmptyList).once();
+        plainServer.expect().get().withPath("/api/v1/namespaces/test/configmaps?limit=500&labelSelector=karaf.pid%2CappName%20in%20%28A%2CB%29").andReturn(200, cmEmptyList).once();
 
         KubernetesConfigAdminBridge kcab = new KubernetesConfigAdminBridge();
         kcab.bindConfigAdmin( caService );
@@ -68,7 +91,7 @@ public class KubernetesConfigAdminBridgeTest {
         KubernetesMockServer plainServer = new KubernetesMockServer(false);
 
         plainServer.expect().get().withPath("/api/v1/namespaces/test/configmaps?labelSelector=karaf.pid%2CappName%20in%20%28A%2CB%29%2Cdatabase.name%20in%20%28my.oracle.datasource%29&watch=true").andReturnChunked(200).always();
-        plainServer.expect().get().withPath("/api/v1/namespaces/test/configmaps?labelSelector=karaf.pid%2CappName%20in%20%28A%2CB%29%2Cdatabase.name%20in%20%28my.oracle.datasource%29").andReturn(200, cmEmptyList).once();
+        plainServer.expect().get().withPath("/api/v1/namespaces/test/configmaps?limit=500&labelSelector=karaf.pid%2CappName%20in%20%28A%2CB%29%2Cdatabase.name%20in%20%28my.oracle.datasource%29").andReturn(200, cmEmptyList).once();
 
         KubernetesConfigAdminBridge kcab = new KubernetesConfigAdminBridge();
         kcab.bindConfigAdmin( caService );
@@ -76,5 +99,67 @@ public class KubernetesConfigAdminBridgeTest {
 
         kcab.activate();
     }
-}
 
+    @Test
+    public void testNamespacesAndShards() throws Exception {
+        System.setProperty("fabric8.pid.filters", "appName=A|appName=B");
+        System.setProperty("fabric8.config.namespaces", "ns1,ns2");
+        KubernetesMockServer plainServer = new KubernetesMockServer(false);
+
+        Set<String> paths = new HashSet<>();
+        Map<String, Configuration> configurations = new HashMap<>();
+        for (String ns : new String[] { "ns1", "ns2" }) {
+            for (String app : new String[] { "A", "B" }) {
+                String pid = ns + "." + app;
+                String watchPath = "/api/v1/namespaces/" + ns + "/configmaps?labelSelector=karaf.pid%2CappName%20in%20%28" + app + "%29&resourceVersion=1&watch=true";
+                String listPath = "/api/v1/namespaces/" + ns + "/configmaps?limit=500&labelSelector=karaf.pid%2CappName%20in%20%28" + app + "%29";
+                plainServer.expect().get().withPath(watchPath).andReturnChunked(200).always();
+                plainServer.expect().get().withPath(listPath).andReturn(200, new ConfigMapListBuilder()
+                    .withNewMetadata().withResourceVersion("1").endMetadata()
+                    .addNewItem()
+                        .withNewMetadata()
+                            .withName(pid).withNamespace(ns).withResourceVersion("1")
+                            .addToLabels("karaf.pid", pid).addToLabels("appName", app)
+                        .endMetadata()
+                        .addToData("key", pid)
+                    .endItem()
+                    .build()).once();
+                paths.add(watchPath);
+                paths.add(listPath);
+
+                Configuration configuration = mock(Configuration.class);
+                when(caService.getConfiguration(pid, null)).thenReturn(configuration);
+                configurations.put(pid, configuration);
+            }
+        }
+
+        KubernetesConfigAdminBridge kcab = new KubernetesConfigAdminBridge();
+        kcab.bindConfigAdmin( caService );
+        kcab.bindKubernetesClient( plainServer.createClient() );
+
+        try {
+            kcab.activate();
+
+            // each shard of each namespace is listed and watched
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+            while (!paths.isEmpty() && System.currentTimeMillis() < deadline) {
+                RecordedRequest request = plainServer.takeRequest(100, TimeUnit.MILLISECONDS);
+                if (request != null) {
+                    paths.remove(request.getPath());
+                }
+            }
+            Assert.assertTrue("Not requested: " + paths, paths.isEmpty());
+
+            // and the ConfigMap of each of them reaches Config Admin
+            for (Map.Entry<String, Configuration> entry : configurations.entrySet()) {
+                ArgumentCaptor<Dictionary> properties = ArgumentCaptor.forClass(Dictionary.class);
+                verify(entry.getValue()).updateIfDifferent(properties.capture());
+                Assert.assertEquals(entry.getKey(), properties.getValue().get("key"));
+            }
+        } finally {
+            kcab.deactivate();
+            System.clearProperty("fabric8.config.namespaces");
+            System.clearProperty("fabric8.pid.filters");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.cm;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PlaceholderDependenciesTest {
+
+    @Test
+    public void testFind() {
+        PlaceholderDependencies dependencies = new PlaceholderDependencies();
+        dependencies.record("pid1", new HashSet<>(Arrays.asList("k8s:secret:s1/password", "env:HOME")));
+        dependencies.record("pid2", new HashSet<>(Arrays.asList("k8s+base64:secret:s1/user", "k8s:map:m1/key")));
+        dependencies.record("pid3", Collections.singleton("k8s:secret:s10/password"));
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList("pid1", "pid2")), dependencies.find("k8s", "secret:s1/"));
+        Assert.assertEquals(Collections.singleton("pid2"), dependencies.find("k8s", "map:m1/"));
+        Assert.assertEquals(Collections.singleton("pid1"), dependencies.find("env", "HOME"));
+        Assert.assertTrue(dependencies.find("k8s", "configmap:m1/").isEmpty());
+        Assert.assertTrue(dependencies.find("sys", "").isEmpty());
+    }
+
+    @Test
+    public void testRecordReplacesAndRemove() {
+        PlaceholderDependencies dependencies = new PlaceholderDependencies();
+        dependencies.record("pid1", Collections.singleton("k8s:secret:s1/password"));
+        dependencies.record("pid1", Collections.singleton("k8s:secret:s2/password"));
+
+        Assert.assertTrue(dependencies.find("k8s", "secret:s1/").isEmpty());
+        Assert.assertEquals(Collections.singleton("pid1"), dependencies.find("k8s", "secret:s2/"));
+
+        dependencies.remove("pid1");
+        Assert.assertTrue(dependencies.find("k8s", "secret:s2/").isEmpty());
+    }
+}
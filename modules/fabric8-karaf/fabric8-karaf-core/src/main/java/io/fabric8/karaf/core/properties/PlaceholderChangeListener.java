@@ -0,0 +1,31 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.core.properties;
+
+/**
+ * Whiteboard service notified when values of resolved placeholders may have changed, e.g. when mounted secret
+ * has been rotated, so the configurations using such placeholders may be resolved again.
+ */
+public interface PlaceholderChangeListener {
+
+    /**
+     * Notifies that the function may return different values for remainders starting with given prefix
+     *
+     * @param function        the name of the function, e.g. <tt>k8s</tt>
+     * @param remainderPrefix the prefix of affected remainders, e.g. <tt>secret:my-secret/</tt>
+     */
+    void placeholdersChanged(String function, String remainderPrefix);
+}
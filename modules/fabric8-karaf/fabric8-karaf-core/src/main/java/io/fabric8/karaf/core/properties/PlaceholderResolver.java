@@ -17,6 +17,7 @@ package io.fabric8.karaf.core.properties;
 
 import java.util.Dictionary;
 import java.util.Map;
+import java.util.Set;
 
 public interface PlaceholderResolver {
    /**
@@ -58,4 +59,13 @@ public interface PlaceholderResolver {
      * @rerurn true if altered
      */
     boolean replaceAll(Map<String, Object> dictionary);
+
+    /**
+     * Returns the expressions of all the placeholders used in the given value, e.g. <tt>k8s:secret:name/key</tt>
+     * for <tt>$[k8s:secret:name/key:-default]</tt>
+     *
+     * @param value the value to inspect
+     * @return the expressions, empty if the value doesn't contain any placeholder
+     */
+    Set<String> getPlaceholders(String value);
 }
@@ -16,14 +16,17 @@
 package io.fabric8.karaf.core.properties;
 
 import java.util.Dictionary;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import io.fabric8.karaf.core.Support;
 import io.fabric8.karaf.core.properties.function.PropertiesFunction;
-import org.apache.commons.lang3.text.StrLookup;
-import org.apache.commons.lang3.text.StrSubstitutor;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.ConfigurationPolicy;
 import org.apache.felix.scr.annotations.Reference;
@@ -50,30 +53,40 @@ public class PlaceholderResolverImpl implements PlaceholderResolver {
     public static final String PLACEHOLDER_SUFFIX = "fabric8.placeholder.suffix";
     public static final String DEFAULT_PLACEHOLDER_PREFIX =  "$[";
     public static final String DEFAULT_PLACEHOLDER_SUFFIX =  "]";
+    public static final String FUNCTION_NAME = "function.name";
 
-    private final CopyOnWriteArrayList<PropertiesFunction> functions;
-    private final StrSubstitutor substitutor;
+    // compiled templates of values with placeholders, least recently used ones are evicted first
+    private static final int MAX_CACHED_TEMPLATES = 4096;
+
+    private final ConcurrentMap<String, PropertiesFunction> functions;
+    private final String prefix;
+    private final String suffix;
+    private final Map<String, PlaceholderTemplate> templates;
 
     public PlaceholderResolverImpl() {
-        this.functions = new CopyOnWriteArrayList<>();
-        this.substitutor = Support.createStrSubstitutor(
-            getSystemPropertyOrEnvVar(PLACEHOLDER_PREFIX, DEFAULT_PLACEHOLDER_PREFIX),
-            getSystemPropertyOrEnvVar(PLACEHOLDER_SUFFIX, DEFAULT_PLACEHOLDER_SUFFIX),
-            new StrLookup<String>() {
-                @Override
-                public String lookup(String value) {
-                    return resolve(value);
-                }
-        });
+        this.functions = new ConcurrentHashMap<>();
+        this.prefix = getSystemPropertyOrEnvVar(PLACEHOLDER_PREFIX, DEFAULT_PLACEHOLDER_PREFIX);
+        this.suffix = getSystemPropertyOrEnvVar(PLACEHOLDER_SUFFIX, DEFAULT_PLACEHOLDER_SUFFIX);
+        this.templates = new LinkedHashMap<String, PlaceholderTemplate>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PlaceholderTemplate> eldest) {
+                return size() > MAX_CACHED_TEMPLATES;
+            }
+        };
     }
 
     @Override
     public String resolve(String value) {
-        String[] resolvers = Support.before(value, ":").split("\\+");
-        String remainder = Support.after(value, ":");
+        PlaceholderTemplate.Chain chain = PlaceholderTemplate.Chain.parse(value);
+        return chain != null ? resolve(chain) : null;
+    }
+
+    String resolve(PlaceholderTemplate.Chain chain) {
+        String value = null;
+        String remainder = chain.remainder;
 
-        for (String resolver : resolvers) {
-            PropertiesFunction function = findFunction(resolver);
+        for (String resolver : chain.functions) {
+            PropertiesFunction function = functions.get(resolver);
 
             if (function == null) {
                 value = null;
@@ -93,12 +106,25 @@ public class PlaceholderResolverImpl implements PlaceholderResolver {
 
     @Override
     public String replace(String value) {
-        return substitutor.replace(value);
+        if (value == null) {
+            return null;
+        }
+        return compile(value).render(this, null);
     }
 
     @Override
     public boolean replaceIn(StringBuilder value) {
-        return substitutor.replaceIn(value);
+        if (value == null) {
+            return false;
+        }
+        String raw = value.toString();
+        String replaced = replace(raw);
+        if (replaced.equals(raw)) {
+            return false;
+        }
+        value.setLength(0);
+        value.append(replaced);
+        return true;
     }
 
     @Override
@@ -111,10 +137,10 @@ public class PlaceholderResolverImpl implements PlaceholderResolver {
             final Object val = dictionary.get(key);
 
             if (val instanceof String) {
-                StringBuilder sb = Support.acquireStringBuilder((String)val);
-                if (substitutor.replaceIn(sb)) {
+                String replaced = replace((String) val);
+                if (!replaced.equals(val)) {
                     replacedCount++;
-                    dictionary.put(key, sb.toString());
+                    dictionary.put(key, replaced);
                 }
             }
         }
@@ -129,10 +155,10 @@ public class PlaceholderResolverImpl implements PlaceholderResolver {
             final Object val = dictionary.get(key);
 
             if (val instanceof String) {
-                StringBuilder sb = Support.acquireStringBuilder((String)val);
-                if (substitutor.replaceIn(sb)) {
+                String replaced = replace((String) val);
+                if (!replaced.equals(val)) {
                     replacedCount++;
-                    dictionary.put(key, sb.toString());
+                    dictionary.put(key, replaced);
                 }
             }
         }
@@ -140,28 +166,70 @@ public class PlaceholderResolverImpl implements PlaceholderResolver {
         return replacedCount > 0;
     }
 
+    @Override
+    public Set<String> getPlaceholders(String value) {
+        if (value == null) {
+            return Collections.emptySet();
+        }
+        PlaceholderTemplate template = compile(value);
+        if (template.isConstant()) {
+            return Collections.emptySet();
+        }
+        Set<String> expressions = new LinkedHashSet<>();
+        template.collect(expressions);
+        return expressions;
+    }
+
     // ****************************
     // Binding
     // ****************************
 
-    protected void bindFunction(PropertiesFunction function) {
-        functions.addIfAbsent(function);
+    protected void bindFunction(PropertiesFunction function, Map<String, ?> properties) {
+        functions.put(functionName(function, properties), function);
     }
 
-    protected void unbindFunction(PropertiesFunction function) {
-        functions.remove(function);
+    protected void unbindFunction(PropertiesFunction function, Map<String, ?> properties) {
+        functions.remove(functionName(function, properties), function);
     }
 
     // ****************************
     // Helpers
     // ****************************
 
-    private PropertiesFunction findFunction(String name) {
-        for (PropertiesFunction fun : functions) {
-            if (name.equals(fun.getName())) {
-                return fun;
+    /**
+     * Values without placeholders (which may be secrets or whole configuration payloads) are not cached, as they
+     * compile to constant template as fast as they'd be looked up.
+     */
+    private PlaceholderTemplate compile(String value) {
+        if (value.indexOf(prefix) < 0) {
+            return PlaceholderTemplate.compile(value, prefix, suffix);
+        }
+
+        PlaceholderTemplate template;
+        synchronized (templates) {
+            template = templates.get(value);
+        }
+        if (template == null) {
+            template = PlaceholderTemplate.compile(value, prefix, suffix);
+            synchronized (templates) {
+                templates.put(value, template);
             }
         }
-        return null;
+        return template;
+    }
+
+    /**
+     * Substitutes placeholders in already resolved value. Such values (which may be secrets) are not cached.
+     */
+    String substitute(String value, List<String> priorVariables) {
+        if (value.indexOf(prefix) < 0) {
+            return value;
+        }
+        return PlaceholderTemplate.compile(value, prefix, suffix).render(this, priorVariables);
+    }
+
+    private static String functionName(PropertiesFunction function, Map<String, ?> properties) {
+        Object name = properties != null ? properties.get(FUNCTION_NAME) : null;
+        return name != null ? name.toString() : function.getName();
     }
 }
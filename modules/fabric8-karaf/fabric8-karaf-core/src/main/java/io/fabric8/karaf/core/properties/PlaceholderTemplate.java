@@ -0,0 +1,265 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.core.properties;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A value compiled into literal segments and placeholders. Compiling follows the rules of the
+ * {@link org.apache.commons.lang3.text.StrSubstitutor} previously used by {@link PlaceholderResolverImpl}:
+ * <ul>
+ *     <li>placeholders may be nested in names of other placeholders</li>
+ *     <li>escape character placed before prefix disables substitution</li>
+ *     <li><code>:-</code> separates the name from default value</li>
+ *     <li>unresolved placeholders are left untouched</li>
+ *     <li>resolved values are substituted again, cyclic references are detected</li>
+ * </ul>
+ */
+final class PlaceholderTemplate {
+    static final char ESCAPE = '$';
+    static final String DEFAULT_VALUE_DELIMITER = ":-";
+
+    private final String raw;
+    // either String literals or Placeholders, null if the value doesn't need any substitution
+    private final Object[] segments;
+
+    private PlaceholderTemplate(String raw, Object[] segments) {
+        this.raw = raw;
+        this.segments = segments;
+    }
+
+    static PlaceholderTemplate compile(String raw, String prefix, String suffix) {
+        int pos = raw.indexOf(prefix);
+        if (pos < 0) {
+            return new PlaceholderTemplate(raw, null);
+        }
+
+        List<Object> segments = new ArrayList<>();
+        int literalStart = 0;
+        while (pos >= 0) {
+            if (pos > 0 && raw.charAt(pos - 1) == ESCAPE) {
+                // escaped prefix is kept as literal, without the escape character
+                if (pos - 1 > literalStart) {
+                    segments.add(raw.substring(literalStart, pos - 1));
+                }
+                literalStart = pos;
+                pos = raw.indexOf(prefix, pos + prefix.length());
+                continue;
+            }
+
+            int end = findSuffix(raw, pos + prefix.length(), prefix, suffix);
+            if (end < 0) {
+                // unterminated placeholder - rest of the value is literal
+                break;
+            }
+            if (pos > literalStart) {
+                segments.add(raw.substring(literalStart, pos));
+            }
+            String expression = raw.substring(pos + prefix.length(), end);
+            literalStart = end + suffix.length();
+            segments.add(new Placeholder(raw.substring(pos, literalStart), compile(expression, prefix, suffix)));
+            pos = raw.indexOf(prefix, literalStart);
+        }
+        if (literalStart < raw.length()) {
+            segments.add(raw.substring(literalStart));
+        }
+        return new PlaceholderTemplate(raw, segments.toArray());
+    }
+
+    private static int findSuffix(String raw, int from, String prefix, String suffix) {
+        int nested = 0;
+        int pos = from;
+        while (pos < raw.length()) {
+            if (raw.startsWith(prefix, pos)) {
+                nested++;
+                pos += prefix.length();
+            } else if (raw.startsWith(suffix, pos)) {
+                if (nested == 0) {
+                    return pos;
+                }
+                nested--;
+                pos += suffix.length();
+            } else {
+                pos++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether the value is returned as is
+     */
+    boolean isConstant() {
+        return segments == null;
+    }
+
+    String getRaw() {
+        return raw;
+    }
+
+    /**
+     * Collects expressions (names without default values) of all the placeholders, including the nested ones
+     */
+    void collect(Collection<String> expressions) {
+        if (segments == null) {
+            return;
+        }
+        for (Object segment : segments) {
+            if (segment instanceof Placeholder) {
+                Placeholder placeholder = (Placeholder) segment;
+                if (placeholder.name != null) {
+                    expressions.add(placeholder.name);
+                } else {
+                    expressions.add(Placeholder.splitDefault(placeholder.expression.getRaw())[0]);
+                    placeholder.expression.collect(expressions);
+                }
+            }
+        }
+    }
+
+    String render(PlaceholderResolverImpl resolver, List<String> priorVariables) {
+        if (segments == null) {
+            return raw;
+        }
+        if (segments.length == 1 && segments[0] instanceof String) {
+            return (String) segments[0];
+        }
+        StringBuilder sb = new StringBuilder(raw.length() + 32);
+        for (Object segment : segments) {
+            if (segment instanceof String) {
+                sb.append((String) segment);
+            } else {
+                if (priorVariables == null) {
+                    priorVariables = new ArrayList<>();
+                }
+                ((Placeholder) segment).render(sb, resolver, priorVariables);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Resolver chain of placeholder name, e.g. <code>k8s+base64:secret:name/key</code>
+     */
+    static final class Chain {
+        final String[] functions;
+        final String remainder;
+
+        private Chain(String[] functions, String remainder) {
+            this.functions = functions;
+            this.remainder = remainder;
+        }
+
+        /**
+         * @return the chain or <tt>null</tt> if the name doesn't contain function names
+         */
+        static Chain parse(String name) {
+            int colon = name.indexOf(':');
+            if (colon < 0) {
+                return null;
+            }
+            // same as String.split() - trailing empty names are ignored
+            int end = colon;
+            while (end > 0 && name.charAt(end - 1) == '+') {
+                end--;
+            }
+            int count = 1;
+            for (int i = 0; i < end; i++) {
+                if (name.charAt(i) == '+') {
+                    count++;
+                }
+            }
+            String[] functions = new String[count];
+            int start = 0;
+            int n = 0;
+            for (int i = 0; i <= end; i++) {
+                if (i == end || name.charAt(i) == '+') {
+                    functions[n++] = name.substring(start, i);
+                    start = i + 1;
+                }
+            }
+            return new Chain(functions, name.substring(colon + 1));
+        }
+    }
+
+    private static final class Placeholder {
+        // original text, used when the placeholder can't be resolved
+        private final String text;
+        private final PlaceholderTemplate expression;
+        // precomputed when the expression doesn't contain nested placeholders
+        private final String name;
+        private final String defaultValue;
+        private final Chain chain;
+
+        Placeholder(String text, PlaceholderTemplate expression) {
+            this.text = text;
+            this.expression = expression;
+            if (expression.isConstant()) {
+                String[] parts = splitDefault(expression.getRaw());
+                this.name = parts[0];
+                this.defaultValue = parts[1];
+                this.chain = Chain.parse(name);
+            } else {
+                this.name = null;
+                this.defaultValue = null;
+                this.chain = null;
+            }
+        }
+
+        void render(StringBuilder sb, PlaceholderResolverImpl resolver, List<String> priorVariables) {
+            String name = this.name;
+            String defaultValue = this.defaultValue;
+            Chain chain = this.chain;
+            if (name == null) {
+                String[] parts = splitDefault(expression.render(resolver, null));
+                name = parts[0];
+                defaultValue = parts[1];
+                chain = Chain.parse(name);
+            }
+
+            if (priorVariables.contains(name)) {
+                StringBuilder cycle = new StringBuilder("Infinite loop in property interpolation of ");
+                for (String prior : priorVariables) {
+                    cycle.append(prior).append("->");
+                }
+                throw new IllegalStateException(cycle.append(name).toString());
+            }
+
+            String value = chain != null ? resolver.resolve(chain) : null;
+            if (value == null) {
+                value = defaultValue;
+            }
+            if (value == null) {
+                sb.append(text);
+                return;
+            }
+
+            priorVariables.add(name);
+            sb.append(resolver.substitute(value, priorVariables));
+            priorVariables.remove(priorVariables.size() - 1);
+        }
+
+        private static String[] splitDefault(String expression) {
+            int idx = expression.indexOf(DEFAULT_VALUE_DELIMITER);
+            if (idx < 0) {
+                return new String[] { expression, null };
+            }
+            return new String[] { expression.substring(0, idx), expression.substring(idx + DEFAULT_VALUE_DELIMITER.length()) };
+        }
+    }
+}
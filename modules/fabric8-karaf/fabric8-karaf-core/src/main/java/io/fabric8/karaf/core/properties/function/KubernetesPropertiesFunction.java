@@ -17,13 +17,17 @@ package io.fabric8.karaf.core.properties.function;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicReference;
 
+import io.fabric8.karaf.core.properties.PlaceholderChangeListener;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.ConfigurationPolicy;
+import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.References;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
@@ -33,27 +37,50 @@ import org.apache.felix.scr.annotations.Service;
     policy = ConfigurationPolicy.IGNORE,
     createPid = false
 )
-@Reference(
-    name = "kubernetesClient",
-    cardinality = ReferenceCardinality.MANDATORY_UNARY,
-    policy = ReferencePolicy.STATIC,
-    referenceInterface = KubernetesClient.class
-)
+@References({
+    @Reference(
+        name = "kubernetesClient",
+        cardinality = ReferenceCardinality.MANDATORY_UNARY,
+        policy = ReferencePolicy.STATIC,
+        referenceInterface = KubernetesClient.class),
+    @Reference(
+        name = "listener",
+        cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE,
+        policy = ReferencePolicy.DYNAMIC,
+        referenceInterface = PlaceholderChangeListener.class)
+})
 @Property(name = "function.name", value = KubernetesPropertiesFunction.FUNCTION_NAME)
 @Service(PropertiesFunction.class)
 public class KubernetesPropertiesFunction implements PropertiesFunction {
     public static final String FUNCTION_NAME = "k8s";
 
     private final AtomicReference<KubernetesClient> kubernetesClient;
+    private final KubernetesResourceCache cache;
+    private final CopyOnWriteArrayList<PlaceholderChangeListener> listeners;
     private final Map<String, KubernetesSupport.Resource> kubernetesResources;
 
     public KubernetesPropertiesFunction() {
         this.kubernetesClient = new AtomicReference<>();
+        this.cache = new KubernetesResourceCache(this::resourceChanged);
+        this.listeners = new CopyOnWriteArrayList<>();
 
+        KubernetesSupport.Resource configMaps = KubernetesSupport.configMapResource(cache);
         this.kubernetesResources = new HashMap<>();
-        this.kubernetesResources.put("secret", KubernetesSupport.secretsResource());
-        this.kubernetesResources.put("map", KubernetesSupport.configMapResource());
-        this.kubernetesResources.put("configmap", KubernetesSupport.configMapResource());
+        this.kubernetesResources.put("secret", KubernetesSupport.secretsResource(cache, this::secretChanged));
+        this.kubernetesResources.put("map", configMaps);
+        this.kubernetesResources.put("configmap", configMaps);
+    }
+
+    // ******************
+    // Lifecycle
+    // ******************
+
+    @Deactivate
+    void deactivate() {
+        for (KubernetesSupport.Resource resource : kubernetesResources.values()) {
+            resource.close();
+        }
+        cache.clear();
     }
 
     // ******************
@@ -85,6 +112,23 @@ public class KubernetesPropertiesFunction implements PropertiesFunction {
         return value;
     }
 
+    private void secretChanged(String name) {
+        for (PlaceholderChangeListener listener : listeners) {
+            listener.placeholdersChanged(FUNCTION_NAME, "secret:" + name + "/");
+        }
+    }
+
+    private void resourceChanged(KubernetesResourceCache.Kind kind, String name) {
+        if (kind == KubernetesResourceCache.Kind.SECRET) {
+            secretChanged(name);
+        } else {
+            for (PlaceholderChangeListener listener : listeners) {
+                listener.placeholdersChanged(FUNCTION_NAME, "map:" + name + "/");
+                listener.placeholdersChanged(FUNCTION_NAME, "configmap:" + name + "/");
+            }
+        }
+    }
+
     // ******************
     // References
     // ******************
@@ -94,6 +138,16 @@ public class KubernetesPropertiesFunction implements PropertiesFunction {
     }
 
     protected void unbindKubernetesClient(KubernetesClient kubernetesClient) {
-        this.kubernetesClient.compareAndSet(kubernetesClient, null);
+        if (this.kubernetesClient.compareAndSet(kubernetesClient, null)) {
+            cache.clear();
+        }
+    }
+
+    protected void bindListener(PlaceholderChangeListener listener) {
+        this.listeners.addIfAbsent(listener);
+    }
+
+    protected void unbindListener(PlaceholderChangeListener listener) {
+        this.listeners.remove(listener);
     }
 }
@@ -0,0 +1,349 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.karaf.core.properties.function;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of ConfigMap and Secret data used to resolve placeholders, so many placeholders referring to the same
+ * resource don't call the API server each. Entries are keyed by (kind, namespace, name) and expire after
+ * {@link #FABRIC8_K8S_CACHE_TTL} milliseconds. While cached, they're kept up to date by single watch per kind
+ * and namespace, and the listener is notified when data of cached resource change. Concurrent lookups of the same
+ * resource share single API call.
+ */
+final class KubernetesResourceCache {
+    public static final Logger LOGGER = LoggerFactory.getLogger(KubernetesResourceCache.class);
+    public static final String FABRIC8_K8S_CACHE_TTL = "fabric8.k8s.cache.ttl";
+    public static final String FABRIC8_K8S_CACHE_SIZE = "fabric8.k8s.cache.size";
+    public static final String FABRIC8_K8S_CACHE_WATCH_ENABLED = "fabric8.k8s.cache.watch.enabled";
+
+    enum Kind {
+        CONFIG_MAP,
+        SECRET
+    }
+
+    private final long ttl;
+    private final boolean watchEnabled;
+    private final BiConsumer<Kind, String> listener;
+    private final Map<Key, CachedData> entries;
+    private final ConcurrentMap<Key, CompletableFuture<Map<String, String>>> inflight;
+    // watches (or time of failed attempt to open the watch) per kind and namespace
+    private final ConcurrentMap<Key, Watch> watches;
+    private final ConcurrentMap<Key, Long> failedWatches;
+
+    KubernetesResourceCache(BiConsumer<Kind, String> listener) {
+        this(listener,
+            getLong(FABRIC8_K8S_CACHE_TTL, 30000L),
+            (int) getLong(FABRIC8_K8S_CACHE_SIZE, 256L),
+            Utils.getSystemPropertyOrEnvVar(FABRIC8_K8S_CACHE_WATCH_ENABLED, true));
+    }
+
+    KubernetesResourceCache(BiConsumer<Kind, String> listener, long ttl, final int maxSize, boolean watchEnabled) {
+        this.listener = listener;
+        this.ttl = ttl;
+        this.watchEnabled = watchEnabled;
+        this.entries = new LinkedHashMap<Key, CachedData>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedData> eldest) {
+                return size() > maxSize;
+            }
+        };
+        this.inflight = new ConcurrentHashMap<>();
+        this.watches = new ConcurrentHashMap<>();
+        this.failedWatches = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the data of given resource, or <tt>null</tt> if the resource doesn't exist
+     */
+    Map<String, String> getData(KubernetesClient client, Kind kind, String name) {
+        if (ttl <= 0) {
+            return fetch(client, kind, name);
+        }
+
+        Key key = new Key(kind, client.getNamespace(), name);
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            CachedData entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                return entry.data;
+            }
+        }
+
+        CompletableFuture<Map<String, String>> future = new CompletableFuture<>();
+        CompletableFuture<Map<String, String>> existing = inflight.putIfAbsent(key, future);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            watch(client, kind);
+            HasMetadata resource = get(client, kind, name);
+            CachedData fetched = new CachedData(data(resource), resourceVersion(resource), System.currentTimeMillis() + ttl);
+            Map<String, String> data;
+            synchronized (entries) {
+                // watch event received while fetching the resource may carry newer data
+                CachedData previous = entries.get(key);
+                if (previous != null && previous.isNewerThan(fetched)) {
+                    data = previous.data;
+                } else {
+                    entries.put(key, fetched);
+                    data = fetched.data;
+                }
+            }
+            future.complete(data);
+            return data;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, future);
+        }
+    }
+
+    /**
+     * Drops all cached data and closes the watches
+     */
+    void clear() {
+        for (Watch watch : watches.values()) {
+            try {
+                watch.close();
+            } catch (Exception e) {
+                LOGGER.debug("Error closing watch", e);
+            }
+        }
+        watches.clear();
+        failedWatches.clear();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private Map<String, String> fetch(KubernetesClient client, Kind kind, String name) {
+        return data(get(client, kind, name));
+    }
+
+    private static HasMetadata get(KubernetesClient client, Kind kind, String name) {
+        return kind == Kind.SECRET
+            ? client.secrets().withName(name).get()
+            : client.configMaps().withName(name).get();
+    }
+
+    private static Map<String, String> data(HasMetadata resource) {
+        if (resource instanceof Secret) {
+            return ((Secret) resource).getData();
+        }
+        if (resource instanceof ConfigMap) {
+            return ((ConfigMap) resource).getData();
+        }
+        return null;
+    }
+
+    private static String resourceVersion(HasMetadata resource) {
+        return resource != null && resource.getMetadata() != null ? resource.getMetadata().getResourceVersion() : null;
+    }
+
+    private void watch(KubernetesClient client, final Kind kind) {
+        if (!watchEnabled) {
+            return;
+        }
+
+        final Key watchKey = new Key(kind, client.getNamespace(), null);
+        if (watches.containsKey(watchKey)) {
+            return;
+        }
+        Long failedAt = failedWatches.get(watchKey);
+        if (failedAt != null && System.currentTimeMillis() - failedAt < ttl) {
+            return;
+        }
+
+        synchronized (watches) {
+            if (watches.containsKey(watchKey)) {
+                return;
+            }
+            try {
+                Watch watch = kind == Kind.SECRET
+                    ? client.secrets().watch(new ResourceWatcher<Secret>(watchKey))
+                    : client.configMaps().watch(new ResourceWatcher<ConfigMap>(watchKey));
+                watches.put(watchKey, watch);
+                failedWatches.remove(watchKey);
+            } catch (KubernetesClientException e) {
+                // e.g. missing permission to watch - cached data just expire
+                LOGGER.debug("Can't watch {} in namespace {}: {}", kind, watchKey.namespace, e.getMessage());
+                failedWatches.put(watchKey, System.currentTimeMillis());
+            }
+        }
+    }
+
+    private void update(Kind kind, String namespace, Watcher.Action action, HasMetadata resource) {
+        if (resource == null || resource.getMetadata() == null) {
+            return;
+        }
+        Key key = new Key(kind, namespace, resource.getMetadata().getName());
+        boolean changed = false;
+        synchronized (entries) {
+            CachedData previous = entries.get(key);
+            // the resource may be being fetched - keep the event, so older fetched data don't replace it
+            boolean tracked = previous != null || inflight.containsKey(key);
+            if (action == Watcher.Action.ERROR) {
+                entries.remove(key);
+                changed = previous != null && previous.data != null;
+            } else if (tracked) {
+                Map<String, String> data = action == Watcher.Action.DELETED ? null : data(resource);
+                CachedData updated = new CachedData(data, resourceVersion(resource), System.currentTimeMillis() + ttl);
+                if (previous == null || !previous.isNewerThan(updated)) {
+                    entries.put(key, updated);
+                    changed = previous != null && !Objects.equals(previous.data, data);
+                }
+            }
+        }
+        if (changed) {
+            try {
+                listener.accept(kind, key.name);
+            } catch (Exception e) {
+                LOGGER.warn("Error notifying about change of {} {}", kind, key.name, e);
+            }
+        }
+    }
+
+    private void invalidate(Key watchKey) {
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> key.kind == watchKey.kind && Objects.equals(key.namespace, watchKey.namespace));
+        }
+    }
+
+    private static Map<String, String> await(CompletableFuture<Map<String, String>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KubernetesClientException("Interrupted while waiting for resource", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new KubernetesClientException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    // ******************************
+    // Helpers
+    // ******************************
+
+    private final class ResourceWatcher<T extends HasMetadata> implements Watcher<T> {
+        private final Key watchKey;
+
+        ResourceWatcher(Key watchKey) {
+            this.watchKey = watchKey;
+        }
+
+        @Override
+        public void eventReceived(Action action, T resource) {
+            update(watchKey.kind, watchKey.namespace, action, resource);
+        }
+
+        @Override
+        public void onClose(KubernetesClientException cause) {
+            // events may have been missed - drop the data and open new watch on next lookup
+            watches.remove(watchKey);
+            invalidate(watchKey);
+            if (cause != null) {
+                LOGGER.debug("Watch of {} in namespace {} closed: {}", watchKey.kind, watchKey.namespace, cause.getMessage());
+            }
+        }
+    }
+
+    private static final class Key {
+        private final Kind kind;
+        private final String namespace;
+        private final String name;
+
+        Key(Kind kind, String namespace, String name) {
+            this.kind = kind;
+            this.namespace = namespace;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return kind == other.kind && Objects.equals(namespace, other.namespace) && Objects.equals(name, other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, namespace, name);
+        }
+    }
+
+    private static long getLong(String name, long defaultValue) {
+        String value = Utils.getSystemPropertyOrEnvVar(name, Long.toString(defaultValue));
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid value {} of {}, using default {}", value, name, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static final class CachedData {
+        private final Map<String, String> data;
+        private final String resourceVersion;
+        private final long expiresAt;
+
+        CachedData(Map<String, String> data, String resourceVersion, long expiresAt) {
+            this.data = data;
+            this.resourceVersion = resourceVersion;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * Whether these data come from newer version of the resource. Versions which aren't numeric can't be
+         * compared, in which case the other data are considered newer.
+         */
+        boolean isNewerThan(CachedData other) {
+            try {
+                return Long.parseLong(resourceVersion) > Long.parseLong(other.resourceVersion);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+    }
+}
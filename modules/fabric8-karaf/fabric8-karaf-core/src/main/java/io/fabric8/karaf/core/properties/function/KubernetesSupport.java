@@ -15,16 +15,13 @@
  */
 package io.fabric8.karaf.core.properties.function;
 
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
-import io.fabric8.kubernetes.api.model.ConfigMap;
-import io.fabric8.kubernetes.api.model.Secret;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.utils.Utils;
 import org.apache.commons.codec.binary.Base64;
@@ -50,13 +47,19 @@ final class KubernetesSupport {
         }
 
         abstract Map<String, String> getData(KubernetesClient client, String name);
+
+        void close() {
+        }
     }
 
     static final class SecretsResource extends Resource {
+        private final KubernetesResourceCache cache;
         private final boolean useApi;
         private final List<Path> paths;
+        private final MountedSecrets mountedSecrets;
 
-        public SecretsResource() {
+        public SecretsResource(KubernetesResourceCache cache, Consumer<String> listener) {
+            this.cache = cache;
             this.useApi = Utils.getSystemPropertyOrEnvVar(FABRIC8_K8S_SECRET_API_ENABLED, false);
             this.paths = new ArrayList<>();
 
@@ -66,30 +69,18 @@ final class KubernetesSupport {
                     this.paths.add(Paths.get(path));
                 }
             }
+            this.mountedSecrets = new MountedSecrets(paths, listener);
         }
 
         @Override
         Map<String, String> getData(KubernetesClient client, String name) {
-            Secret resource = client.secrets().withName(name).get();
-            return (resource != null) ? resource.getData() : null;
+            return cache.getData(client, KubernetesResourceCache.Kind.SECRET, name);
         }
 
         @Override
         public String get(KubernetesClient client, String name, String key) {
-            // The secret's value
-            String value = null;
-
             // First check if secret has been mounted locally
-            for (Path path : this.paths) {
-                Path secretPath = path.resolve(name).resolve(key);
-                if (Files.exists(secretPath) && Files.isRegularFile(secretPath)) {
-                    try {
-                        value = new String(Files.readAllBytes(secretPath)).trim();
-                    } catch (IOException e) {
-                        LOGGER.warn("", e);
-                    }
-                }
-            }
+            String value = mountedSecrets.get(name, key);
 
             // Then retrieve secrets using APIs if enabled and not found locally
             if (this.useApi && Utils.isNullOrEmpty(value)) {
@@ -101,13 +92,23 @@ final class KubernetesSupport {
 
             return value;
         }
+
+        @Override
+        void close() {
+            mountedSecrets.close();
+        }
     }
 
     static final class ConfigMapResource extends Resource {
+        private final KubernetesResourceCache cache;
+
+        public ConfigMapResource(KubernetesResourceCache cache) {
+            this.cache = cache;
+        }
+
         @Override
         Map<String, String> getData(KubernetesClient client, String name) {
-            ConfigMap resource = client.configMaps().withName(name).get();
-            return (resource != null) ? resource.getData() : null;
+            return cache.getData(client, KubernetesResourceCache.Kind.CONFIG_MAP, name);
         }
     }
 
@@ -115,11 +116,11 @@ final class KubernetesSupport {
     // Resource helpers
     // ******************************
 
-    public static Resource secretsResource() {
-        return new SecretsResource();
+    public static Resource secretsResource(KubernetesResourceCache cache, Consumer<String> listener) {
+        return new SecretsResource(cache, listener);
     }
 
-    public static Resource configMapResource() {
-        return new ConfigMapResource();
+    public static Resource configMapResource(KubernetesResourceCache cache) {
+        return new ConfigMapResource(cache);
     }
 }
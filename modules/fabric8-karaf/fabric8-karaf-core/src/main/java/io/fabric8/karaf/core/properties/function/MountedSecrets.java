@@ -0,0 +1,219 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.karaf.core.properties.function;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Secrets mounted as volumes under the configured paths. Each secret directory is read once, when the secret is
+ * first looked up, and is then watched for changes. Kubernetes updates mounted secrets by atomically swapping
+ * the <tt>..data</tt> symlink - all the events of such swap invalidate the secret, and (once the directory
+ * settles) the listener is notified if the content of the secret actually changed.
+ */
+final class MountedSecrets implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MountedSecrets.class);
+    // time to wait for more events of single secret update
+    private static final long SETTLE_TIME = 200L;
+
+    private final List<Path> paths;
+    private final Consumer<String> listener;
+    private final ConcurrentMap<String, Map<String, String>> secrets;
+    private final ConcurrentMap<WatchKey, Path> watchedDirs;
+    private volatile WatchService watchService;
+    private volatile boolean closed;
+
+    MountedSecrets(List<Path> paths, Consumer<String> listener) {
+        this.paths = paths;
+        this.listener = listener;
+        this.secrets = new ConcurrentHashMap<>();
+        this.watchedDirs = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the value of the key of mounted secret or <tt>null</tt> if there's no such secret/key
+     */
+    String get(String name, String key) {
+        if (paths.isEmpty()) {
+            return null;
+        }
+
+        Map<String, String> data;
+        try {
+            data = secrets.computeIfAbsent(name, n -> {
+                watch(n);
+                return read(n);
+            });
+        } catch (UncheckedIOException e) {
+            // secret can't be watched, so it's not cached either
+            LOGGER.debug("Can't watch mounted secret {}: {}", name, e.getMessage());
+            data = read(name);
+        }
+        return data.get(key);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        WatchService ws = watchService;
+        if (ws != null) {
+            try {
+                ws.close();
+            } catch (IOException e) {
+                LOGGER.debug("Error closing watch service", e);
+            }
+        }
+        secrets.clear();
+        watchedDirs.clear();
+    }
+
+    private Map<String, String> read(String name) {
+        Map<String, String> data = new HashMap<>();
+        // later paths take precedence
+        for (Path path : paths) {
+            Path dir = path.resolve(name);
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    String key = file.getFileName().toString();
+                    // skip the ..data symlink and timestamped directories of atomic writer
+                    if (!key.startsWith("..") && Files.isRegularFile(file)) {
+                        try {
+                            data.put(key, new String(Files.readAllBytes(file)).trim());
+                        } catch (IOException e) {
+                            LOGGER.warn("", e);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("", e);
+            }
+        }
+        return data.isEmpty() ? Collections.emptyMap() : data;
+    }
+
+    private synchronized void watch(String name) {
+        if (closed) {
+            throw new UncheckedIOException(new IOException("Mounted secrets are closed"));
+        }
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                // secret directories which don't exist yet are detected using events of the parent directories
+                for (Path path : paths) {
+                    if (Files.isDirectory(path)) {
+                        register(path);
+                    }
+                }
+                Thread thread = new Thread(this::run, "fabric8-karaf-secrets-watcher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            for (Path path : paths) {
+                Path dir = path.resolve(name);
+                if (Files.isDirectory(dir) && !watchedDirs.containsValue(dir)) {
+                    register(dir);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void register(Path dir) throws IOException {
+        WatchKey key = dir.register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedDirs.put(key, dir);
+    }
+
+    private void run() {
+        WatchService ws = watchService;
+        try {
+            while (!closed) {
+                Set<String> changed = new HashSet<>();
+                WatchKey key = ws.take();
+                while (key != null) {
+                    collect(key, changed);
+                    key = ws.poll(SETTLE_TIME, TimeUnit.MILLISECONDS);
+                }
+                for (String name : changed) {
+                    Map<String, String> previous = secrets.remove(name);
+                    if (previous != null && !previous.equals(read(name))) {
+                        LOGGER.debug("Mounted secret {} has changed", name);
+                        notifyListener(name);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void collect(WatchKey key, Set<String> changed) {
+        Path dir = watchedDirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed.addAll(secrets.keySet());
+            } else if (dir != null && paths.contains(dir)) {
+                // secret directory created or removed
+                changed.add(((Path) event.context()).getFileName().toString());
+            } else if (dir != null) {
+                changed.add(dir.getFileName().toString());
+            }
+        }
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+            if (dir != null && !paths.contains(dir)) {
+                changed.add(dir.getFileName().toString());
+            }
+        }
+    }
+
+    private void notifyListener(String name) {
+        try {
+            listener.accept(name);
+        } catch (Exception e) {
+            LOGGER.warn("Error notifying about change of mounted secret {}", name, e);
+        }
+    }
+}
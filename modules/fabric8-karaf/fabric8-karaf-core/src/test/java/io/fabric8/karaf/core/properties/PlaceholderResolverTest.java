@@ -15,7 +15,10 @@
  */
 package io.fabric8.karaf.core.properties;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 
 import io.fabric8.karaf.core.properties.function.PropertiesFunction;
@@ -29,8 +32,8 @@ public class PlaceholderResolverTest {
     @Before
     public void setUp() {
         resolver = new PlaceholderResolverImpl();
-        resolver.bindFunction(new Map1());
-        resolver.bindFunction(new Map2());
+        resolver.bindFunction(new Map1(), Collections.emptyMap());
+        resolver.bindFunction(new Map2(), Collections.emptyMap());
     }
 
     @Test
@@ -62,6 +65,36 @@ public class PlaceholderResolverTest {
         Assert.assertEquals("$[map1:noReplace]", resolver.replace("$[map1:noReplace]"));
     }
 
+    @Test
+    public void testReplaceEscapedAndUnterminated() {
+        Assert.assertEquals("$[map1:prop1] hello1", resolver.replace("$$[map1:prop1] $[map1:prop1]"));
+        Assert.assertEquals("hello1 $[map1:prop1", resolver.replace("$[map1:prop1] $[map1:prop1"));
+        Assert.assertEquals("no placeholder", resolver.replace("no placeholder"));
+    }
+
+    @Test
+    public void testReplaceDefaultValue() {
+        Assert.assertEquals("hello1", resolver.replace("$[map1:prop1:-default]"));
+        Assert.assertEquals("default", resolver.replace("$[map1:noReplace:-default]"));
+        Assert.assertEquals("x hello2", resolver.replace("x $[map1:noReplace:-$[map2:prop1]]"));
+    }
+
+    @Test
+    public void testReplaceIn() {
+        StringBuilder sb = new StringBuilder("$[map1:prop1] $[map1:noReplace]");
+        Assert.assertTrue(resolver.replaceIn(sb));
+        Assert.assertEquals("hello1 $[map1:noReplace]", sb.toString());
+        Assert.assertFalse(resolver.replaceIn(sb));
+    }
+
+    @Test
+    public void testGetPlaceholders() {
+        Assert.assertEquals(
+            new LinkedHashSet<>(Arrays.asList("map1:prop1", "map2:prop-$[map1:prop5]", "map1:prop5", "map2:prop2")),
+            resolver.getPlaceholders("$[map1:prop1] $[map2:prop-$[map1:prop5]] $[map2:prop2:-default]"));
+        Assert.assertTrue(resolver.getPlaceholders("no placeholder").isEmpty());
+    }
+
     @Test
     public void testReplaceAll() {
         Map<String, Object> map = new HashMap<>();
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.core.properties.function;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.StatusBuilder;
+import io.fabric8.kubernetes.api.model.WatchEvent;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KubernetesResourceCacheTest {
+    private static final String PATH = "/api/v1/namespaces/test/configmaps";
+
+    private KubernetesMockServer server;
+    private KubernetesClient client;
+    private KubernetesResourceCache cache;
+    private List<String> changes;
+
+    @Before
+    public void setUp() {
+        server = new KubernetesMockServer(false);
+        server.init();
+        client = server.createClient();
+        changes = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @After
+    public void tearDown() {
+        if (cache != null) {
+            cache.clear();
+        }
+        client.close();
+        server.destroy();
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        server.expect().get().withPath(PATH + "/cm1").andReturn(200, configMap("cm1", "1")).once();
+        server.expect().get().withPath(PATH + "/cm1").andReturn(200, configMap("cm1", "2")).once();
+
+        cache = new KubernetesResourceCache(this::changed, 300, 16, false);
+        Assert.assertEquals("value@1", value("cm1"));
+        Assert.assertEquals("value@1", value("cm1"));
+        Assert.assertEquals(1, server.getRequestCount());
+
+        Thread.sleep(400);
+        Assert.assertEquals("value@2", value("cm1"));
+        Assert.assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void testConcurrentLookupsShareFetch() throws Exception {
+        server.expect().get().delay(300, TimeUnit.MILLISECONDS).withPath(PATH + "/cm1")
+            .andReturn(200, configMap("cm1", "1")).always();
+
+        cache = new KubernetesResourceCache(this::changed, 10000, 16, false);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> value("cm1")));
+            }
+            for (Future<String> result : results) {
+                Assert.assertEquals("value@1", result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        Assert.assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void testWatchEventReplacesCachedData() throws Exception {
+        server.expect().get().withPath(PATH + "/cm1").andReturn(200, configMap("cm1", "1")).once();
+        server.expect().get().withPath(PATH + "?watch=true")
+            .andUpgradeToWebSocket().open()
+            .waitFor(300).andEmit(new WatchEvent(configMap("cm1", "2"), "MODIFIED"))
+            .done().once();
+
+        cache = new KubernetesResourceCache(this::changed, 10000, 16, true);
+        Assert.assertEquals("value@1", value("cm1"));
+
+        awaitChanges(1);
+        Assert.assertEquals(Collections.singletonList("CONFIG_MAP cm1"), changes);
+        Assert.assertEquals("value@2", value("cm1"));
+    }
+
+    @Test
+    public void testFetchedDataDoNotReplaceNewerWatchEvent() throws Exception {
+        server.expect().get().delay(1000, TimeUnit.MILLISECONDS).withPath(PATH + "/cm1")
+            .andReturn(200, configMap("cm1", "1")).once();
+        // the event is received while the older version is being fetched
+        server.expect().get().withPath(PATH + "?watch=true")
+            .andUpgradeToWebSocket().open()
+            .waitFor(100).andEmit(new WatchEvent(configMap("cm1", "3"), "MODIFIED"))
+            .done().once();
+
+        cache = new KubernetesResourceCache(this::changed, 10000, 16, true);
+        Assert.assertEquals("value@3", value("cm1"));
+        Assert.assertEquals("value@3", value("cm1"));
+    }
+
+    @Test
+    public void testFailedWatchRetriedAfterExpiry() throws Exception {
+        server.expect().get().withPath(PATH + "/cm1").andReturn(200, configMap("cm1", "1")).always();
+        server.expect().get().withPath(PATH + "/cm2").andReturn(200, configMap("cm2", "1")).always();
+        server.expect().get().withPath(PATH + "?watch=true")
+            .andReturn(403, new StatusBuilder().withCode(403).withMessage("forbidden").build()).once();
+        server.expect().get().withPath(PATH + "?watch=true")
+            .andUpgradeToWebSocket().open().done().always();
+
+        cache = new KubernetesResourceCache(this::changed, 300, 16, true);
+        Assert.assertEquals("value@1", value("cm1"));
+        // watch is not attempted again until the data expire
+        Assert.assertEquals("value@1", value("cm2"));
+        Assert.assertEquals(1, watchRequests());
+
+        Thread.sleep(400);
+        Assert.assertEquals("value@1", value("cm1"));
+        Assert.assertEquals(1, watchRequests());
+    }
+
+    private String value(String name) {
+        Map<String, String> data = cache.getData(client, KubernetesResourceCache.Kind.CONFIG_MAP, name);
+        return data != null ? data.get("key") : null;
+    }
+
+    private void changed(KubernetesResourceCache.Kind kind, String name) {
+        changes.add(kind + " " + name);
+    }
+
+    private void awaitChanges(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (changes.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    /**
+     * Takes the requests received since last call, and returns the number of watch requests among them
+     */
+    private int watchRequests() throws InterruptedException {
+        int count = 0;
+        RecordedRequest request;
+        while ((request = server.takeRequest(100, TimeUnit.MILLISECONDS)) != null) {
+            if (request.getPath().contains("watch=true")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static ConfigMap configMap(String name, String resourceVersion) {
+        return new ConfigMapBuilder()
+            .withNewMetadata()
+                .withName(name)
+                .withNamespace("test")
+                .withResourceVersion(resourceVersion)
+            .endMetadata()
+            .addToData("key", "value@" + resourceVersion)
+            .build();
+    }
+}
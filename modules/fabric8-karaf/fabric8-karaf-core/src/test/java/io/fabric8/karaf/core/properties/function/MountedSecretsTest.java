@@ -0,0 +1,88 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.core.properties.function;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MountedSecretsTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private Path secret;
+    private MountedSecrets secrets;
+    private List<String> changes;
+
+    @Before
+    public void setUp() throws IOException {
+        Path root = tmp.getRoot().toPath();
+        secret = Files.createDirectory(root.resolve("db"));
+        changes = Collections.synchronizedList(new ArrayList<>());
+        secrets = new MountedSecrets(Collections.singletonList(root), changes::add);
+    }
+
+    @After
+    public void tearDown() {
+        secrets.close();
+    }
+
+    @Test
+    public void testSwapOfDataSymlink() throws Exception {
+        // layout of the secret volume, as written by the kubelet
+        writeVersion("..2018_01_01", "password1");
+        Files.createSymbolicLink(secret.resolve("..data"), Paths.get("..2018_01_01"));
+        Files.createSymbolicLink(secret.resolve("password"), Paths.get("..data", "password"));
+
+        Assert.assertEquals("password1", secrets.get("db", "password"));
+
+        // atomic update of the secret
+        writeVersion("..2018_01_02", "password2");
+        Files.createSymbolicLink(secret.resolve("..data_tmp"), Paths.get("..2018_01_02"));
+        Files.move(secret.resolve("..data_tmp"), secret.resolve("..data"), StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(secret.resolve("..2018_01_01").resolve("password"));
+        Files.delete(secret.resolve("..2018_01_01"));
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (changes.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals("password2", secrets.get("db", "password"));
+
+        // all the events of the swap are handled as single change
+        Thread.sleep(1000);
+        Assert.assertEquals(Collections.singletonList("db"), changes);
+    }
+
+    private void writeVersion(String version, String password) throws IOException {
+        Path dir = Files.createDirectory(secret.resolve(version));
+        Files.write(dir.resolve("password"), password.getBytes());
+    }
+}
@@ -21,7 +21,7 @@ import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Map;
-import java.util.Vector;
+import java.util.NoSuchElementException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -50,6 +50,7 @@ public class EncryptingPersistenceManager implements PersistenceManager {
 
     private static Logger log = LoggerFactory.getLogger(EncryptingPersistenceManager.class);
     private final CredentialStoreService credentialStoreService;
+    private final SecretCache secrets = new SecretCache(SecretCache.DEFAULT_MAX_SIZE);
 
     private BundleContext context;
     private PersistenceManager filePm;
@@ -151,6 +152,7 @@ public class EncryptingPersistenceManager implements PersistenceManager {
             elytronPmRegistration = null;
         }
         this.filePm = null;
+        secrets.clear();
     }
 
     @Override
@@ -169,18 +171,15 @@ public class EncryptingPersistenceManager implements PersistenceManager {
         return null;
     }
 
+    /**
+     * Dictionaries are decrypted one by one, when enumerated, so they don't have to be all loaded at once
+     * @return
+     * @throws IOException
+     */
     @Override
     public Enumeration getDictionaries() throws IOException {
         if (filePm != null) {
-            Enumeration dictionaries = filePm.getDictionaries();
-            Vector<Dictionary> decrypted = new Vector<>();
-            while (dictionaries.hasMoreElements()) {
-                Dictionary next = (Dictionary) dictionaries.nextElement();
-                if (next != null) {
-                    decrypted.add(decrypt(next));
-                }
-            }
-            return decrypted.elements();
+            return new DecryptingEnumeration(filePm.getDictionaries());
         }
         return null;
     }
@@ -232,19 +231,17 @@ public class EncryptingPersistenceManager implements PersistenceManager {
                 String alias = value.substring(3); // xxx
 
                 try {
-                    if (credentialStoreService.aliasExists(alias)) {
-                        String secret = credentialStoreService.retrievePassword(alias);
-                        if (secret != null) {
-                            // replace with decrypted, so runtime has access to real values!
-                            // like `config:property-list` command
-                            // the trick is that felix.fileinstall should not access clear text values, so
-                            // we're using some hacky OSGi hooks to not store plain passwords in ${karaf.etc}
-                            additionalProperties.put(k, secret);
-                            // add marking property - mostly for fileinstall
-                            additionalProperties.put(ENCRYPTED_PREFIX + k, value);
-                            // persist only encrypted
-                            storedProperties.put(ENCRYPTED_PREFIX + k, value);
-                        }
+                    String secret = retrieveSecret(alias);
+                    if (secret != null) {
+                        // replace with decrypted, so runtime has access to real values!
+                        // like `config:property-list` command
+                        // the trick is that felix.fileinstall should not access clear text values, so
+                        // we're using some hacky OSGi hooks to not store plain passwords in ${karaf.etc}
+                        additionalProperties.put(k, secret);
+                        // add marking property - mostly for fileinstall
+                        additionalProperties.put(ENCRYPTED_PREFIX + k, value);
+                        // persist only encrypted
+                        storedProperties.put(ENCRYPTED_PREFIX + k, value);
                     } else {
                         log.warn("Alias {} doesn't exist in credential store, skipping", value);
                         storedProperties.put(k, value);
@@ -263,9 +260,15 @@ public class EncryptingPersistenceManager implements PersistenceManager {
         return storedProperties;
     }
 
+    /**
+     * Called when properties are loaded. Credential store aliases referenced by {@code _encrypted.} properties
+     * are dereferenced. Properties without such references are returned as they are.
+     * @param originalProperties
+     * @return
+     */
     public Dictionary decrypt(Dictionary originalProperties) {
-        if (originalProperties == null) {
-            return null;
+        if (originalProperties == null || !isEncrypted(originalProperties)) {
+            return originalProperties;
         }
 
         Dictionary<Object, Object> loadedProperties = new Hashtable<>();
@@ -281,11 +284,9 @@ public class EncryptingPersistenceManager implements PersistenceManager {
                 String alias = value.substring(3); // xxx
 
                 try {
-                    if (credentialStoreService.aliasExists(alias)) {
-                        String secret = credentialStoreService.retrievePassword(alias);
-                        if (secret != null) {
-                            loadedProperties.put(key, secret);
-                        }
+                    String secret = retrieveSecret(alias);
+                    if (secret != null) {
+                        loadedProperties.put(key, secret);
                     } else {
                         log.warn("Alias {} doesn't exist in credential store, skipping", alias);
                         loadedProperties.put(k, v);
@@ -302,6 +303,21 @@ public class EncryptingPersistenceManager implements PersistenceManager {
         return loadedProperties;
     }
 
+    /**
+     * Called when alias is added to or removed from credential store, so its cached secret isn't used anymore
+     * @param alias
+     */
+    public void invalidateSecret(String alias) {
+        secrets.invalidate(alias);
+    }
+
+    /**
+     * Called when credential store is (re)loaded, so no cached secret is used anymore
+     */
+    public void invalidateSecrets() {
+        secrets.clear();
+    }
+
     /**
      * Unregister CM wrapper
      */
@@ -309,6 +325,73 @@ public class EncryptingPersistenceManager implements PersistenceManager {
         if (cmWrapperRegistration != null) {
             cmWrapperRegistration.unregister();
         }
+        secrets.clear();
+    }
+
+    private static boolean isEncrypted(Dictionary properties) {
+        for (Enumeration<?> e = properties.keys(); e.hasMoreElements();) {
+            Object k = e.nextElement();
+            if (k instanceof String && ((String) k).startsWith(ENCRYPTED_PREFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves secret for alias from cache or credential store. {@link CredentialStoreService#retrievePassword}
+     * returns {@code null} for not existing alias, so there's no need to check it with
+     * {@link CredentialStoreService#aliasExists} first.
+     * @param alias
+     * @return secret or {@code null} if there's no password for the alias
+     */
+    private String retrieveSecret(String alias) throws GeneralSecurityException {
+        String secret = secrets.get(alias);
+        if (secret == null) {
+            // secret retrieved concurrently with alias change is used, but not cached
+            long stamp = secrets.stamp();
+            secret = credentialStoreService.retrievePassword(alias);
+            if (secret != null) {
+                secrets.put(alias, secret, stamp);
+            }
+        }
+        return secret;
+    }
+
+    /**
+     * {@link Enumeration} of dictionaries, which decrypts each of them only when it's enumerated
+     */
+    private class DecryptingEnumeration implements Enumeration<Dictionary> {
+
+        private final Enumeration<?> dictionaries;
+        private Dictionary next;
+
+        DecryptingEnumeration(Enumeration<?> dictionaries) {
+            this.dictionaries = dictionaries;
+            advance();
+        }
+
+        @Override
+        public boolean hasMoreElements() {
+            return next != null;
+        }
+
+        @Override
+        public Dictionary nextElement() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Dictionary current = next;
+            advance();
+            return decrypt(current);
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && dictionaries.hasMoreElements()) {
+                next = (Dictionary) dictionaries.nextElement();
+            }
+        }
     }
 
 }
@@ -0,0 +1,106 @@
+/**
+ *  Copyright 2005-2018 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.jboss.fuse.credential.store.cm;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Secrets retrieved from credential store, so the store isn't accessed for each encrypted property of each
+ * configuration loaded by ConfigurationAdmin. Secrets are kept as {@code char[]}, which are wiped when evicted.
+ * Wiping guards only the cached copy - {@link #get(String)} returns a new {@link String} on each hit, which (like
+ * the decrypted configuration properties) stays in memory until garbage collected.
+ * <p/>
+ * A secret retrieved from the store may be stale by the time it's cached, if its alias was changed in between.
+ * So the secret is cached only if there was no invalidation since the {@link #stamp()} taken before retrieving it.
+ */
+final class SecretCache {
+
+    static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final Map<String, char[]> secrets;
+    private long invalidations;
+
+    SecretCache(final int maxSize) {
+        // least recently used secrets are evicted first
+        secrets = new LinkedHashMap<String, char[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, char[]> eldest) {
+                if (size() > maxSize) {
+                    wipe(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param alias
+     * @return cached secret or {@code null} if not cached
+     */
+    synchronized String get(String alias) {
+        char[] secret = secrets.get(alias);
+        return secret == null ? null : new String(secret);
+    }
+
+    /**
+     * @return stamp to take before retrieving a secret from the store and to pass to
+     * {@link #put(String, String, long)}
+     */
+    synchronized long stamp() {
+        return invalidations;
+    }
+
+    /**
+     * @param alias
+     * @param secret
+     * @param stamp {@link #stamp()} taken before the secret was retrieved
+     * @return {@code false} if the secret isn't cached, as there was an invalidation since the stamp was taken
+     */
+    synchronized boolean put(String alias, String secret, long stamp) {
+        if (stamp != invalidations) {
+            return false;
+        }
+        wipe(secrets.put(alias, secret.toCharArray()));
+        return true;
+    }
+
+    synchronized void invalidate(String alias) {
+        invalidations++;
+        wipe(secrets.remove(alias));
+    }
+
+    synchronized void clear() {
+        invalidations++;
+        for (char[] secret : secrets.values()) {
+            wipe(secret);
+        }
+        secrets.clear();
+    }
+
+    synchronized int size() {
+        return secrets.size();
+    }
+
+    private static void wipe(char[] secret) {
+        if (secret != null) {
+            Arrays.fill(secret, '\0');
+        }
+    }
+
+}
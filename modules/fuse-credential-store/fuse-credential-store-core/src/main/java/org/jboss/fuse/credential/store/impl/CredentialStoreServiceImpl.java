@@ -128,6 +128,9 @@ public class CredentialStoreServiceImpl implements CredentialStoreService {
     public void useCredentialStoreFromConfig(CredentialStoreConfiguration config) throws IOException, GeneralSecurityException {
         // will create actual file
         credentialStore = loadCredentialStore(config);
+        if (encryptingPm != null) {
+            encryptingPm.invalidateSecrets();
+        }
         registerOSGiServices();
     }
 
@@ -154,12 +157,18 @@ public class CredentialStoreServiceImpl implements CredentialStoreService {
 
         credentialStore.store(alias, new PasswordCredential(password));
         credentialStore.flush();
+        if (encryptingPm != null) {
+            encryptingPm.invalidateSecret(alias);
+        }
     }
 
     @Override
     public void removeAlias(String alias) throws CredentialStoreException {
         credentialStore.remove(alias, Credential.class);
         credentialStore.flush();
+        if (encryptingPm != null) {
+            encryptingPm.invalidateSecret(alias);
+        }
     }
 
     @Override
@@ -0,0 +1,204 @@
+/**
+ *  Copyright 2005-2018 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.jboss.fuse.credential.store.cm;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+import org.apache.felix.cm.PersistenceManager;
+import org.jboss.fuse.credential.store.impl.CredentialStoreServiceImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wildfly.security.WildFlyElytronProvider;
+import org.wildfly.security.auth.server.IdentityCredentials;
+import org.wildfly.security.credential.Credential;
+import org.wildfly.security.credential.PasswordCredential;
+import org.wildfly.security.credential.source.CredentialSource;
+import org.wildfly.security.credential.store.CredentialStore;
+import org.wildfly.security.credential.store.impl.KeyStoreCredentialStore;
+import org.wildfly.security.password.PasswordFactory;
+import org.wildfly.security.password.interfaces.ClearPassword;
+import org.wildfly.security.password.spec.ClearPasswordSpec;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EncryptingPersistenceManagerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    CredentialStore credentialStore;
+    CredentialStoreServiceImpl credentialStoreService;
+    EncryptingPersistenceManager pm;
+
+    @After
+    public void deregisterElytronProvider() {
+        Security.removeProvider(new WildFlyElytronProvider().getName());
+    }
+
+    @Before
+    public void initializeCredentialStore() throws Exception {
+        final WildFlyElytronProvider elytron = new WildFlyElytronProvider();
+        Security.addProvider(elytron);
+
+        final PasswordFactory passwordFactory = PasswordFactory.getInstance(ClearPassword.ALGORITHM_CLEAR, elytron);
+        final Credential credential = new PasswordCredential(passwordFactory.generatePassword(
+                new ClearPasswordSpec("it was the best of times it was the worst of times".toCharArray())));
+        final CredentialSource credentialSource = IdentityCredentials.NONE.withCredential(credential);
+
+        credentialStore = CredentialStore.getInstance(KeyStoreCredentialStore.KEY_STORE_CREDENTIAL_STORE, elytron);
+
+        final Map<String, String> parameters = new HashMap<>();
+        parameters.put("location", new File(tmp.getRoot(), "credential.store").getAbsolutePath());
+        parameters.put("keyStoreType", "JCEKS");
+        parameters.put("create", "true");
+        credentialStore.initialize(parameters,
+                new CredentialStore.CredentialSourceProtectionParameter(credentialSource));
+
+        credentialStoreService = new CredentialStoreServiceImpl(null, elytron);
+        pm = new EncryptingPersistenceManager(null, credentialStoreService);
+        set("credentialStore", credentialStore);
+        set("encryptingPm", pm);
+
+        credentialStoreService.addAlias("alias", "this is a password");
+    }
+
+    @Test
+    public void shouldDecryptFromCache() throws Exception {
+        assertThat(pm.decrypt(encrypted()).get("password")).isEqualTo("this is a password");
+
+        // not through the service, so cached secret is still used
+        credentialStore.remove("alias", Credential.class);
+        assertThat(pm.decrypt(encrypted()).get("password")).isEqualTo("this is a password");
+
+        pm.invalidateSecrets();
+        Dictionary decrypted = pm.decrypt(encrypted());
+        assertThat(decrypted.get("password")).isNull();
+        assertThat(decrypted.get(EncryptingPersistenceManager.ENCRYPTED_PREFIX + "password")).isEqualTo("CS:alias");
+    }
+
+    @Test
+    public void shouldInvalidateChangedAliases() throws Exception {
+        assertThat(pm.decrypt(encrypted()).get("password")).isEqualTo("this is a password");
+
+        credentialStoreService.addAlias("alias", "this is another password");
+        assertThat(pm.decrypt(encrypted()).get("password")).isEqualTo("this is another password");
+
+        credentialStoreService.removeAlias("alias");
+        assertThat(pm.decrypt(encrypted()).get("password")).isNull();
+    }
+
+    @Test
+    public void shouldNotCacheSecretChangedWhileRetrieved() throws Exception {
+        CredentialStoreServiceImpl service = spy(credentialStoreService);
+        pm = new EncryptingPersistenceManager(null, service);
+        set("encryptingPm", pm);
+        doAnswer(invocation -> {
+            Object secret = invocation.callRealMethod();
+            // alias changed after the old secret was retrieved
+            credentialStoreService.addAlias("alias", "this is another password");
+            return secret;
+        }).doCallRealMethod().when(service).retrievePassword("alias");
+
+        assertThat(pm.decrypt(encrypted()).get("password")).isEqualTo("this is a password");
+        assertThat(pm.decrypt(encrypted()).get("password")).isEqualTo("this is another password");
+    }
+
+    @Test
+    public void shouldEncryptUsingCache() throws Exception {
+        Dictionary<Object, Object> properties = new Hashtable<>();
+        properties.put("password", "CS:alias");
+        properties.put("user", "admin");
+
+        Dictionary stored = pm.encrypt(properties);
+
+        assertThat(stored.get("password")).isNull();
+        assertThat(stored.get(EncryptingPersistenceManager.ENCRYPTED_PREFIX + "password")).isEqualTo("CS:alias");
+        assertThat(stored.get("user")).isEqualTo("admin");
+        assertThat(properties.get("password")).isEqualTo("this is a password");
+    }
+
+    @Test
+    public void shouldDecryptDictionariesLazily() throws Exception {
+        credentialStoreService.addAlias("alias2", "this is another password");
+        CredentialStoreServiceImpl service = spy(credentialStoreService);
+        pm = new EncryptingPersistenceManager(null, service);
+
+        Dictionary<Object, Object> plain = new Hashtable<>();
+        plain.put("user", "admin");
+        Dictionary<Object, Object> encrypted2 = encrypted();
+        encrypted2.put(EncryptingPersistenceManager.ENCRYPTED_PREFIX + "password", "CS:alias2");
+        PersistenceManager filePm = mock(PersistenceManager.class);
+        when(filePm.getDictionaries()).thenReturn(Collections.enumeration(Arrays.asList(plain, encrypted(), encrypted2)));
+        Field f = EncryptingPersistenceManager.class.getDeclaredField("filePm");
+        f.setAccessible(true);
+        f.set(pm, filePm);
+
+        Enumeration<?> dictionaries = pm.getDictionaries();
+        verify(service, never()).retrievePassword(anyString());
+
+        assertThat(dictionaries.nextElement()).isSameAs(plain);
+        verify(service, never()).retrievePassword(anyString());
+
+        assertThat(((Dictionary) dictionaries.nextElement()).get("password")).isEqualTo("this is a password");
+        verify(service).retrievePassword("alias");
+        verify(service, never()).retrievePassword("alias2");
+
+        assertThat(((Dictionary) dictionaries.nextElement()).get("password")).isEqualTo("this is another password");
+        verify(service).retrievePassword("alias2");
+        assertThat(dictionaries.hasMoreElements()).isFalse();
+    }
+
+    @Test
+    public void shouldNotCopyPlainDictionaries() {
+        Dictionary<Object, Object> plain = new Hashtable<>();
+        plain.put("user", "admin");
+
+        assertThat(pm.decrypt(plain)).isSameAs(plain);
+    }
+
+    private Dictionary<Object, Object> encrypted() {
+        Dictionary<Object, Object> properties = new Hashtable<>();
+        properties.put(EncryptingPersistenceManager.ENCRYPTED_PREFIX + "password", "CS:alias");
+        properties.put("user", "admin");
+        return properties;
+    }
+
+    private void set(String name, Object value) throws Exception {
+        Field f = CredentialStoreServiceImpl.class.getDeclaredField(name);
+        f.setAccessible(true);
+        f.set(credentialStoreService, value);
+    }
+
+}